@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.maggu2810.osgi.fxloader.eclipse.jpms.JavaModuleLayerModification;
+
+/**
+ * Startup time report of the module layer bootstrap of one framework start.
+ *
+ * <p>
+ * The report is written as JSON to the file given by "fxloader.osgi.eclipse.hook.report" as soon as the first UI
+ * class (of package "javafx.stage") has been served and written again (complete) when the framework is stopped, so
+ * phases after the first UI class (e.g. modules loaded on demand) are contained as well. Wall clock budgets per phase
+ * (in milliseconds) are given by "fxloader.osgi.eclipse.hook.report.budgets" (e.g. "bootstrap=500,create-layer=300").
+ * Exceeded budgets are reported as warnings or, if "fxloader.osgi.eclipse.hook.report.fail-on-budget" is set, exit
+ * the JVM with a failure.
+ */
+final class BootstrapReport {
+
+    private static final String UI_PACKAGE_PREFIX = "javafx.stage.";
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final Path file;
+    private final Map<String, Long> budgets;
+    private final boolean failOnBudget;
+    private final Runnable budgetFailure;
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private final AtomicInteger bundlesScanned = new AtomicInteger();
+    private final AtomicInteger modulesResolved = new AtomicInteger();
+    private final AtomicInteger classesServed = new AtomicInteger();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private volatile JavaModuleLayerModification modifications;
+    private volatile int classesBeforeFirstUiClass = -1;
+    private volatile long firstUiClassNanos = -1;
+    private boolean complete;
+    private boolean failed;
+
+    private BootstrapReport(final Path file, final Map<String, Long> budgets, final boolean failOnBudget,
+            final Runnable budgetFailure) {
+        this.file = file;
+        this.budgets = budgets;
+        this.failOnBudget = failOnBudget;
+        this.budgetFailure = budgetFailure;
+    }
+
+    /**
+     * Create a report as configured by the system properties.
+     *
+     * @return the report (that does nothing if no report file is configured)
+     */
+    static BootstrapReport create() {
+        return create(() -> System.exit(1));
+    }
+
+    /**
+     * Create a report as configured by the system properties.
+     *
+     * @param budgetFailure the action to run (on another thread) if a budget is exceeded and the report should fail
+     * @return the report (that does nothing if no report file is configured)
+     */
+    static BootstrapReport create(final Runnable budgetFailure) {
+        final String file = System.getProperty("fxloader.osgi.eclipse.hook.report");
+        final Map<String, Long> budgets = new LinkedHashMap<>();
+        final String budgetsValue = System.getProperty("fxloader.osgi.eclipse.hook.report.budgets");
+        if (budgetsValue != null) {
+            for (final String budget : budgetsValue.split(",")) {
+                final int idx = budget.indexOf('=');
+                if (idx > 0) {
+                    try {
+                        budgets.put(budget.substring(0, idx).trim(), Long.parseLong(budget.substring(idx + 1).trim()));
+                    } catch (final NumberFormatException e) {
+                        System.err.println("BootstrapReport#create - Invalid budget '" + budget + "'");
+                    }
+                }
+            }
+        }
+        return new BootstrapReport(file == null ? null : Paths.get(file), budgets,
+                Boolean.getBoolean("fxloader.osgi.eclipse.hook.report.fail-on-budget"), budgetFailure);
+    }
+
+    boolean isEnabled() {
+        return this.file != null;
+    }
+
+    /**
+     * Start measuring a phase.
+     *
+     * @return the start token to pass to {@link #end(String, long[])}
+     */
+    long[] begin() {
+        if (!isEnabled()) {
+            return null;
+        }
+        return new long[] { System.nanoTime(), cpuTime() };
+    }
+
+    /**
+     * Finish measuring a phase. A phase could be measured several times, the times are summed up.
+     *
+     * @param phase the phase name
+     * @param begin the token returned by {@link #begin()}
+     */
+    void end(final String phase, final long[] begin) {
+        if (begin == null) {
+            return;
+        }
+        final long wall = System.nanoTime() - begin[0];
+        final long cpu = begin[1] < 0 ? 0 : cpuTime() - begin[1];
+        synchronized (this.phases) {
+            final long[] values = this.phases.computeIfAbsent(phase, p -> new long[3]);
+            values[0] += wall;
+            values[1] += cpu;
+            values[2]++;
+        }
+    }
+
+    void bundlesScanned(final int count) {
+        this.bundlesScanned.addAndGet(count);
+    }
+
+    void modulesResolved(final int count) {
+        this.modulesResolved.addAndGet(count);
+    }
+
+    synchronized void modifications(final JavaModuleLayerModification modifications) {
+        // the modifications reference the module layers, do not keep them longer than needed
+        if (isEnabled() && !this.complete) {
+            this.modifications = modifications;
+        }
+    }
+
+    void blocked(final long nanos) {
+        this.blockedNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Count a class served by the module layer.
+     *
+     * <p>
+     * The report is written after the first UI class has been served (and again on {@link #complete()}).
+     *
+     * @param name the class name
+     */
+    void classServed(final String name) {
+        final int count = this.classesServed.incrementAndGet();
+        if (isEnabled() && this.firstUiClassNanos < 0 && name.startsWith(UI_PACKAGE_PREFIX)) {
+            synchronized (this) {
+                if (this.firstUiClassNanos < 0) {
+                    this.classesBeforeFirstUiClass = count - 1;
+                    this.firstUiClassNanos = System.nanoTime() - this.startNanos;
+                }
+            }
+            write();
+        }
+    }
+
+    /**
+     * Write the complete report on framework stop, later writes are ignored.
+     */
+    synchronized void complete() {
+        if (!isEnabled() || this.complete) {
+            return;
+        }
+        write(true);
+        this.complete = true;
+        // the modifications reference the controllers of the module layers
+        this.modifications = null;
+    }
+
+    /**
+     * Write the report with the values recorded so far and check the budgets.
+     */
+    synchronized void write() {
+        if (!isEnabled() || this.complete) {
+            return;
+        }
+        write(false);
+    }
+
+    private void write(final boolean last) {
+        final List<String> exceeded = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"startedAt\": \"").append(this.startedAt).append("\",\n");
+        sb.append("  \"phases\": {");
+        synchronized (this.phases) {
+            String separator = "\n";
+            for (final Map.Entry<String, long[]> phase : this.phases.entrySet()) {
+                final long[] values = phase.getValue();
+                final Long budget = this.budgets.get(phase.getKey());
+                final boolean phaseExceeded = budget != null && values[0] > budget * 1_000_000L;
+                if (phaseExceeded) {
+                    exceeded.add(phase.getKey());
+                }
+                sb.append(separator).append("    \"").append(phase.getKey()).append("\": { ");
+                sb.append("\"wallMillis\": ").append(millis(values[0]));
+                sb.append(", \"cpuMillis\": ").append(millis(values[1]));
+                sb.append(", \"count\": ").append(values[2]);
+                if (budget != null) {
+                    sb.append(", \"budgetMillis\": ").append(budget);
+                    sb.append(", \"exceeded\": ").append(phaseExceeded);
+                }
+                sb.append(" }");
+                separator = ",\n";
+            }
+        }
+        sb.append("\n  },\n");
+        final JavaModuleLayerModification m = this.modifications;
+        sb.append("  \"bundlesScanned\": ").append(this.bundlesScanned.get()).append(",\n");
+        sb.append("  \"modulesResolved\": ").append(this.modulesResolved.get()).append(",\n");
+        sb.append("  \"directivesApplied\": ").append(m == null ? 0 : m.getAppliedCount()).append(",\n");
+        sb.append("  \"classesServed\": ").append(this.classesServed.get()).append(",\n");
+        sb.append("  \"classesBeforeFirstUiClass\": ")
+                .append(this.classesBeforeFirstUiClass < 0 ? "null" : this.classesBeforeFirstUiClass).append(",\n");
+        sb.append("  \"firstUiClassMillis\": ")
+                .append(this.firstUiClassNanos < 0 ? "null" : millis(this.firstUiClassNanos)).append(",\n");
+        sb.append("  \"blockedMillis\": ").append(millis(this.blockedNanos.get())).append(",\n");
+        sb.append("  \"complete\": ").append(last).append(",\n");
+        sb.append("  \"budgetsExceeded\": [");
+        for (int i = 0; i < exceeded.size(); i++) {
+            sb.append(i == 0 ? "\"" : ", \"").append(exceeded.get(i)).append('"');
+        }
+        sb.append("]\n}\n");
+
+        try {
+            Files.write(this.file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            System.err.println("BootstrapReport#write - Failed to write report to " + this.file);
+            e.printStackTrace();
+        }
+
+        if (!exceeded.isEmpty()) {
+            System.err.println("BootstrapReport#write - Budget exceeded for " + exceeded + ", see " + this.file);
+            if (this.failOnBudget && !this.failed) {
+                this.failed = true;
+                // Exit on another thread, the current one could hold locks needed by shutdown hooks
+                final Thread exit = new Thread(this.budgetFailure, "fxloader-report-exit");
+                exit.start();
+            }
+        }
+    }
+
+    private static long cpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
@@ -11,6 +11,8 @@
 
 package de.maggu2810.osgi.fxloader.eclipse;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.lang.ModuleLayer.Controller;
 import java.lang.module.Configuration;
@@ -21,13 +23,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -38,15 +45,21 @@ import org.eclipse.osgi.internal.loader.BundleLoader;
 import org.eclipse.osgi.internal.loader.ModuleClassLoader;
 import org.eclipse.osgi.service.urlconversion.URLConverter;
 import org.eclipse.osgi.storage.BundleInfo.Generation;
+import org.eclipse.osgi.util.ManifestElement;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.util.tracker.ServiceTracker;
 
 import de.maggu2810.osgi.fxloader.eclipse.jpms.AddOpenExports;
 import de.maggu2810.osgi.fxloader.eclipse.jpms.AddReads;
+import de.maggu2810.osgi.fxloader.eclipse.jpms.DemandModuleLayers;
 import de.maggu2810.osgi.fxloader.eclipse.jpms.JavaModuleLayerModification;
+import de.maggu2810.osgi.fxloader.eclipse.jpms.PackedModuleImage;
+import de.maggu2810.osgi.fxloader.eclipse.jpms.PackedModuleImageClassLoader;
 
 /**
  * Hook to overwrite OSGis default classloading.
@@ -62,18 +75,34 @@ public class FXClassLoader extends ClassLoaderHook {
         System.err.printf("FXClassLoader#" + funcName + " - " + format, args);
     }
 
-    private static final Map<String, ServiceTracker<Object, URLConverter>> URL_TRACKERS = new HashMap<>();
-
-    private final AtomicBoolean boostrappingModules = new AtomicBoolean();
+    private final AtomicReference<CompletableFuture<Map<String, ClassLoader>>> bootstrap = new AtomicReference<>();
+    private final ThreadLocal<Boolean> reentrance = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private final Map<String, ServiceTracker<Object, URLConverter>> urlTrackers = new HashMap<>();
+    private final boolean earlyRouting = Boolean.getBoolean("fxloader.osgi.eclipse.hook.early-routing");
+    private volatile BootstrapReport report = BootstrapReport.create();
     private BundleContext frameworkContext;
     private ModuleLayer moduleLayer;
-    private ClassLoader j11Classloader;
-    private Set<String> j11ModulePackages;
-    private boolean reentrance;
+    // written while holding the lock, but read without it on the lookup path
+    private volatile DemandModuleLayers demandModuleLayers;
+    // set between framework stop and the next start, lookups of lingering threads must not bootstrap a new layer
+    private volatile boolean stopped;
+    // the Platform class if the toolkit has been started by the pre-warming, guarded by the lock
+    private Class<?> startedPlatform;
+    // the pre-warming of the current layer, guarded by the lock
+    private Thread prewarmThread;
 
     @Override
-    public synchronized ModuleClassLoader createClassLoader(final ClassLoader parent,
-            final EquinoxConfiguration configuration, final BundleLoader delegate, final Generation generation) {
+    public ModuleClassLoader createClassLoader(final ClassLoader parent, final EquinoxConfiguration configuration,
+            final BundleLoader delegate, final Generation generation) {
+        return createClassLoader(parent, configuration, delegate, generation, System.nanoTime());
+    }
+
+    private synchronized ModuleClassLoader createClassLoader(final ClassLoader parent,
+            final EquinoxConfiguration configuration, final BundleLoader delegate, final Generation generation,
+            final long calledNanos) {
+        // e.g. waiting for the bootstrap of the module layer
+        this.report.blocked(System.nanoTime() - calledNanos);
+
         // FIXME Can we get rid of this?
         if (this.frameworkContext == null) {
             this.frameworkContext = generation.getBundleInfo().getStorage().getModuleContainer().getFrameworkWiring()
@@ -82,22 +111,194 @@ public class FXClassLoader extends ClassLoaderHook {
         return super.createClassLoader(parent, configuration, delegate, generation);
     }
 
+    /**
+     * Set the context of the started framework.
+     *
+     * @param context the system bundle context
+     */
+    synchronized void frameworkStarted(final BundleContext context) {
+        this.frameworkContext = context;
+        this.report = BootstrapReport.create();
+        this.stopped = false;
+    }
+
+    /**
+     * Release the module layer and everything that references it on framework stop, so the layer (and its classes)
+     * could be unloaded.
+     *
+     * <p>
+     * The layer is not released while the framework is running (e.g. on a refresh of the provider bundles), because
+     * bundles that are not refreshed would still see the classes of the old layer while new lookups are served by a
+     * new one. The next JavaFX class lookup (after a framework restart) bootstraps a new module layer.
+     */
+    void teardown() {
+        final String funcName = "teardown";
+
+        final Thread prewarming;
+        synchronized (this) {
+            if (FXClassloaderConfigurator.DEBUG) {
+                debugf(funcName, "Releasing module layer %s%n", this.moduleLayer);
+            }
+
+            this.stopped = true;
+            prewarming = this.prewarmThread;
+            this.prewarmThread = null;
+        }
+
+        // a toolkit that is still starting up is exited by the pre-warming itself
+        if (prewarming != null) {
+            try {
+                prewarming.join(Long.getLong("fxloader.osgi.eclipse.hook.bootstrap-timeout", 30000));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        final Class<?> platform;
+        synchronized (this) {
+            platform = this.startedPlatform;
+            this.startedPlatform = null;
+        }
+
+        // the JavaFX application thread references the layer and keeps the JVM alive, it is exited before the
+        // classloaders are closed and without holding the lock (exiting waits for that thread which could be blocked
+        // on this hook, e.g. loading a class of a pending module)
+        if (platform != null) {
+            exitToolkit(platform);
+        }
+
+        synchronized (this) {
+            final CompletableFuture<Map<String, ClassLoader>> future = this.bootstrap.getAndSet(null);
+            if (future != null && !future.cancel(false) && !future.isCompletedExceptionally()) {
+                // URLClassLoader instances of the advanced bootstrap keep the JAR files open, the loader of the module
+                // image keeps the image open
+                future.getNow(Collections.emptyMap()).values().stream().distinct()
+                        .filter(Closeable.class::isInstance).map(Closeable.class::cast).forEach(c -> {
+                            try {
+                                c.close();
+                            } catch (final IOException e) {
+                                if (FXClassloaderConfigurator.DEBUG) {
+                                    e.printStackTrace();
+                                }
+                            }
+                        });
+            }
+            this.moduleLayer = null;
+            this.demandModuleLayers = null;
+
+            this.report.complete();
+            synchronized (this.urlTrackers) {
+                this.urlTrackers.values().forEach(ServiceTracker::close);
+                this.urlTrackers.clear();
+            }
+            this.frameworkContext = null;
+        }
+    }
+
+    /**
+     * Route classes of already loaded module packages directly to the module layer (if early routing is enabled).
+     *
+     * <p>
+     * This skips the remaining delegation chain (imports, required bundles, bundle class path, dynamic imports) that
+     * will fail for JavaFX classes anyway. Boot delegation has already been checked by the framework at this point.
+     * Classes are not routed if the bundle imports their package, gets it from a required bundle, exports it, matches
+     * it by a "DynamicImport-Package" header or contains the class on its own class path (or the one of a fragment).
+     * Dynamic imports that are added at runtime (e.g. by weaving hooks) are not considered.
+     */
+    @Override
+    public Class<?> preFindClass(final String name, final ModuleClassLoader moduleClassLoader)
+            throws ClassNotFoundException {
+        final String funcName = "preFindClass";
+
+        if (!this.earlyRouting || this.reentrance.get()) {
+            return null;
+        }
+
+        // Do not bootstrap here, that is done on the first failing lookup in postFindClass
+        final CompletableFuture<Map<String, ClassLoader>> future = this.bootstrap.get();
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+
+        final int lastIndexOf = name.lastIndexOf('.');
+        if (lastIndexOf < 0) {
+            return null;
+        }
+        final String pn = name.substring(0, lastIndexOf);
+        final ClassLoader loader = future.join().get(pn);
+        if (loader == null) {
+            return null;
+        }
+
+        final BundleLoader bundleLoader = moduleClassLoader.getBundleLoader();
+        if (bundleLoader.getPackageSource(pn) != null || bundleLoader.isExportedPackage(pn)
+                || isDynamicallyImported(bundleLoader, pn)
+                || moduleClassLoader.getClasspathManager().findLocalEntry(name.replace('.', '/') + ".class") != null) {
+            return null;
+        }
+
+        if (FXClassloaderConfigurator.DEBUG) {
+            debugf(funcName, "Routing '%s' of %s to %s%n", name, moduleClassLoader, loader);
+        }
+
+        this.reentrance.set(Boolean.TRUE);
+        try {
+            final Class<?> loadedClass = loader.loadClass(name);
+            this.report.classServed(name);
+            return loadedClass;
+        } catch (final ClassNotFoundException e) {
+            return null;
+        } finally {
+            this.reentrance.remove();
+        }
+    }
+
+    private static boolean isDynamicallyImported(final BundleLoader bundleLoader, final String pn) {
+        final Object info = bundleLoader.getWiring().getRevision().getRevisionInfo();
+        if (!(info instanceof Generation)) {
+            return false;
+        }
+        final String header = ((Generation) info).getHeaders().get(Constants.DYNAMICIMPORT_PACKAGE);
+        if (header == null) {
+            return false;
+        }
+        try {
+            for (final ManifestElement element : ManifestElement.parseHeader(Constants.DYNAMICIMPORT_PACKAGE,
+                    header)) {
+                for (final String pattern : element.getValueComponents()) {
+                    if (pattern.equals("*") || pattern.equals(pn) || pattern.endsWith(".*")
+                            && pn.startsWith(pattern.substring(0, pattern.length() - 1))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (final BundleException e) {
+            // let the framework decide
+            return true;
+        }
+    }
+
     @Override
     public Class<?> postFindClass(final String name, final ModuleClassLoader moduleClassLoader)
             throws ClassNotFoundException {
         final String funcName = "postFindClass";
 
-        if (this.reentrance) {
+        if (this.reentrance.get()) {
             if (FXClassloaderConfigurator.DEBUG) {
                 debugf(funcName, "Loop detected returning null%n");
             }
             return null;
         }
-        this.reentrance = true;
+        this.reentrance.set(Boolean.TRUE);
         try {
             // JavaFX is not part of JDK anymore need to install modules on the fly
             try {
                 return findClassJavaFX11(name, moduleClassLoader);
+            } catch (final InterruptedException e) {
+                // interrupted while waiting for the bootstrap, keep the interrupt status for the caller
+                Thread.currentThread().interrupt();
+                return null;
             } catch (final Throwable e) {
                 if (FXClassloaderConfigurator.DEBUG) {
                     debugf(funcName, "exception while loading %s. Continue delegation by returning NULL%n",
@@ -107,7 +308,7 @@ public class FXClassLoader extends ClassLoaderHook {
                 return null;
             }
         } finally {
-            this.reentrance = false;
+            this.reentrance.remove();
         }
     }
 
@@ -119,74 +320,330 @@ public class FXClassLoader extends ClassLoaderHook {
             debugf(funcName, "Loading class '%s' for %s%n", name, moduleClassLoader);
         }
 
-        synchronized (this) {
-            if (this.j11ModulePackages != null && this.j11ModulePackages.isEmpty()) {
-                if (FXClassloaderConfigurator.DEBUG) {
-                    debugf(funcName, "Loader is empty. Returning null.%n");
-                }
+        final Map<String, ClassLoader> packageLoaders = getPackageLoaders();
+        if (packageLoaders == null) {
+            return null;
+        }
+        final DemandModuleLayers demandLayers = this.demandModuleLayers;
+        if (packageLoaders.isEmpty() && (demandLayers == null || !demandLayers.hasPendingModules())) {
+            if (FXClassloaderConfigurator.DEBUG) {
+                debugf(funcName, "Loader is empty. Returning null.%n");
+            }
+
+            return null;
+        }
 
+        final int lastIndexOf = name.lastIndexOf('.');
+        Class<?> loadedClass = null;
+        try {
+            if (lastIndexOf < 0) {
+                return null;
+            }
+
+            final ClassLoader loader = getPackageLoader(packageLoaders, name.substring(0, lastIndexOf));
+            if (loader == null) {
                 return null;
             }
-            if (this.boostrappingModules.get()) {
-                // If classes are loaded while we boostrap we can just return
-                debugf(funcName, "Loading '%s' while we bootstrap. Returning null.%n", name);
+
+            if (FXClassloaderConfigurator.DEBUG) {
+                debugf(funcName, "Using classloader %s%n", loader);
+            }
+
+            loadedClass = loader.loadClass(name);
+            this.report.classServed(name);
+            return loadedClass;
+        } finally {
+            if (FXClassloaderConfigurator.DEBUG) {
+                debugf(funcName, "%s - ended%n", loadedClass);
+            }
+        }
+    }
+
+    /**
+     * Get the classloaders of the module packages.
+     *
+     * <p>
+     * The first caller bootstraps the module layer, all other threads wait for the bootstrap to finish (at most the
+     * configured bootstrap timeout). Lookups of the bootstrapping thread itself do not get here, they are stopped by
+     * the reentrance check of {@link #postFindClass(String, ModuleClassLoader)}.
+     *
+     * @return the classloaders by package name or null if the framework has been stopped
+     * @throws InterruptedException if the thread has been interrupted while waiting for the bootstrap
+     * @throws Throwable if the bootstrap failed or timed out
+     */
+    private Map<String, ClassLoader> getPackageLoaders() throws Throwable {
+        while (true) {
+            if (this.stopped) {
                 return null;
             }
+            final CompletableFuture<Map<String, ClassLoader>> future = this.bootstrap.get();
+            if (future == null) {
+                final CompletableFuture<Map<String, ClassLoader>> created = new CompletableFuture<>();
+                if (this.bootstrap.compareAndSet(null, created)) {
+                    return bootstrapPackageLoaders(created);
+                }
+                continue;
+            }
 
-            if (this.j11Classloader == null) {
+            final long waitStart = System.nanoTime();
+            try {
+                final long timeout = Long.getLong("fxloader.osgi.eclipse.hook.bootstrap-timeout", 30000);
+                return timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+            } catch (final ExecutionException e) {
+                throw e.getCause();
+            } finally {
+                this.report.blocked(System.nanoTime() - waitStart);
+            }
+        }
+    }
+
+    private Map<String, ClassLoader> bootstrapPackageLoaders(final CompletableFuture<Map<String, ClassLoader>> future)
+            throws Throwable {
+        try {
+            final long[] begin = this.report.begin();
+            final Map<String, ClassLoader> packageLoaders = new ConcurrentHashMap<>();
+            addPackageLoaders(packageLoaders, getModuleLayer(System.nanoTime()));
+            this.report.end("bootstrap", begin);
+            future.complete(packageLoaders);
+            prewarm(future, packageLoaders);
+            return packageLoaders;
+        } catch (final Throwable t) {
+            // publish the failure to the waiting threads and allow a later retry
+            future.completeExceptionally(t);
+            this.bootstrap.compareAndSet(future, null);
+            throw t;
+        }
+    }
+
+    private ClassLoader getPackageLoader(final Map<String, ClassLoader> packageLoaders, final String pn) {
+        final ClassLoader loader = packageLoaders.get(pn);
+        if (loader != null) {
+            return loader;
+        }
+        // only lock if a pending module contains the package
+        final DemandModuleLayers demandLayers = this.demandModuleLayers;
+        if (demandLayers != null && demandLayers.getPendingModule(pn) != null) {
+            return loadPendingModule(packageLoaders, pn, System.nanoTime());
+        }
+        // a concurrent load publishes the packages before it removes them from the pending ones
+        return packageLoaders.get(pn);
+    }
+
+    /**
+     * Start the JavaFX toolkit and / or load and initialize the configured classes on a background thread (if
+     * configured), so the first UI usage does not pay for it.
+     *
+     * <p>
+     * Headless or software pipelines are selected by the usual JavaFX system properties (e.g. "prism.order=sw"). A
+     * toolkit started here is exited again on {@link #teardown()}.
+     *
+     * @param future the bootstrap the classloaders belong to
+     * @param packageLoaders the classloaders by package name
+     */
+    private void prewarm(final CompletableFuture<Map<String, ClassLoader>> future,
+            final Map<String, ClassLoader> packageLoaders) {
+        final String funcName = "prewarm";
+
+        final String classes = System.getProperty("fxloader.osgi.eclipse.hook.prewarm-classes");
+        final boolean toolkit = Boolean.getBoolean("fxloader.osgi.eclipse.hook.prewarm-toolkit");
+        if (classes == null && !toolkit) {
+            return;
+        }
+
+        final Thread thread = new Thread(() -> {
+            if (toolkit) {
                 try {
-                    this.boostrappingModules.set(true);
-                    // As all modules are loaded by the same classloader using the first one is OK
-                    final ModuleLayer layer = getModuleLayer();
-                    final Set<Module> modules = layer.modules();
-                    if (!modules.isEmpty()) {
-                        this.j11Classloader = layer.findLoader(modules.iterator().next().getName());
-                        this.j11ModulePackages = modules.stream().flatMap(m -> m.getPackages().stream())
-                                .collect(Collectors.toSet());
-                    } else {
-                        return null;
+                    final Class<?> platform = loadPrewarmClass(packageLoaders, "javafx.application.Platform");
+                    Thread.currentThread().setContextClassLoader(platform.getClassLoader());
+                    synchronized (this) {
+                        // do not start the toolkit for a layer that has been released already
+                        if (this.stopped || this.bootstrap.get() != future) {
+                            return;
+                        }
+                    }
+                    // in contrast to Platform.startup this does not fail if the application started the toolkit
+                    // already (and Application.launch still works after it)
+                    final Class<?> platformImpl = loadPrewarmClass(packageLoaders,
+                            "com.sun.javafx.application.PlatformImpl");
+                    platformImpl.getMethod("startup", Runnable.class).invoke(null, (Runnable) () -> {
+                        if (FXClassloaderConfigurator.DEBUG) {
+                            debugf(funcName, "Toolkit started%n");
+                        }
+                    });
+                    final boolean released;
+                    synchronized (this) {
+                        released = this.stopped || this.bootstrap.get() != future;
+                        if (!released) {
+                            this.startedPlatform = platform;
+                        }
+                    }
+                    // the framework has been stopped while the toolkit was starting up
+                    if (released) {
+                        exitToolkit(platform);
+                    }
+                } catch (final Throwable t) {
+                    // e.g. there is no display
+                    if (FXClassloaderConfigurator.DEBUG) {
+                        debugf(funcName, "Failed to start toolkit%n");
+                        t.printStackTrace();
+                    }
+                }
+            }
+            if (classes != null) {
+                for (final String name : classes.split(",")) {
+                    try {
+                        loadPrewarmClass(packageLoaders, name.trim());
+                    } catch (final Throwable t) {
+                        if (FXClassloaderConfigurator.DEBUG) {
+                            debugf(funcName, "Failed to initialize '%s'%n", name);
+                            t.printStackTrace();
+                        }
                     }
-                } finally {
-                    this.boostrappingModules.set(false);
                 }
             }
+        }, "fxloader-prewarm");
+        thread.setDaemon(true);
+        synchronized (this) {
+            if (this.stopped || this.bootstrap.get() != future) {
+                return;
+            }
+            this.prewarmThread = thread;
         }
+        thread.start();
+    }
 
-        if (FXClassloaderConfigurator.DEBUG) {
-            debugf(funcName, "Using classloader %s%n", this.j11Classloader);
+    private static void exitToolkit(final Class<?> platform) {
+        try {
+            platform.getMethod("exit").invoke(null);
+        } catch (final Throwable t) {
+            if (FXClassloaderConfigurator.DEBUG) {
+                debugf("exitToolkit", "Failed to exit toolkit%n");
+                t.printStackTrace();
+            }
         }
+    }
 
+    private Class<?> loadPrewarmClass(final Map<String, ClassLoader> packageLoaders, final String name)
+            throws ClassNotFoundException {
         final int lastIndexOf = name.lastIndexOf('.');
-        Class<?> loadedClass = null;
-        try {
-            if (lastIndexOf < 0) {
-                return null;
-            } else if (!this.j11ModulePackages.contains(name.substring(0, lastIndexOf))) {
-                return null;
-            }
+        final ClassLoader loader = lastIndexOf < 0 ? null
+                : getPackageLoader(packageLoaders, name.substring(0, lastIndexOf));
+        if (loader == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return Class.forName(name, true, loader);
+    }
 
-            return loadedClass = this.j11Classloader.loadClass(name);
-        } finally {
-            if (FXClassloaderConfigurator.DEBUG) {
-                debugf(funcName, "%s - ended%n", loadedClass);
+    private synchronized ClassLoader loadPendingModule(final Map<String, ClassLoader> packageLoaders,
+            final String pn, final long calledNanos) {
+        final String funcName = "loadPendingModule";
+
+        this.report.blocked(System.nanoTime() - calledNanos);
+
+        final ClassLoader loader = packageLoaders.get(pn);
+        if (loader != null) {
+            return loader;
+        }
+        // the layers could have been released in the meantime
+        final DemandModuleLayers demandLayers = this.demandModuleLayers;
+        final String module = demandLayers == null ? null : demandLayers.getPendingModule(pn);
+        if (module == null) {
+            return null;
+        }
+
+        if (FXClassloaderConfigurator.DEBUG) {
+            debugf(funcName, "Loading module '%s' for package '%s'%n", module, pn);
+        }
+
+        final long[] begin = this.report.begin();
+        demandLayers.load(Collections.singleton(module), layer -> addPackageLoaders(packageLoaders, layer));
+        this.report.end("load-pending-module", begin);
+        return packageLoaders.get(pn);
+    }
+
+    private void addPackageLoaders(final Map<String, ClassLoader> packageLoaders, final ModuleLayer layer) {
+        if (layer == ModuleLayer.boot()) {
+            return;
+        }
+        this.report.modulesResolved(layer.modules().size());
+        for (final Module m : layer.modules()) {
+            final ClassLoader loader = layer.findLoader(m.getName());
+            for (final String pn : m.getPackages()) {
+                packageLoaders.put(pn, loader);
             }
         }
     }
 
-    private synchronized ModuleLayer getModuleLayer() throws Throwable {
+    private synchronized ModuleLayer getModuleLayer(final long calledNanos) throws Throwable {
         final String funcName = "getModuleLayer";
 
-        if (this.moduleLayer == null) {
-            final List<FXProviderBundle> providers = getDeployedJavaModuleBundlePaths(this.frameworkContext);
+        this.report.blocked(System.nanoTime() - calledNanos);
 
+        // a bootstrap that raced with the teardown
+        if (this.stopped) {
+            throw new IllegalStateException("Framework has been stopped");
+        }
+
+        if (this.moduleLayer == null) {
             final ClassLoader parentClassloader = getClass().getClassLoader();
 
             if (FXClassloaderConfigurator.DEBUG) {
                 debugf(funcName, "Parent Classloader: %s%n", parentClassloader);
             }
 
-            this.moduleLayer = initModuleLayer(parentClassloader, providers,
-                    collectModifications(this.frameworkContext));
+            final BootstrapReport report = this.report;
+            final String moduleImage = System.getProperty("fxloader.osgi.eclipse.hook.module-image");
+            if (moduleImage != null) {
+                long[] begin = report.begin();
+                final JavaModuleLayerModification modifications = collectModifications(this.frameworkContext);
+                report.end("collect-modifications", begin);
+                report.modifications(modifications);
+
+                begin = report.begin();
+                this.moduleLayer = packedModuleImageBootstrap(parentClassloader, Paths.get(moduleImage),
+                        modifications);
+                report.end("create-layer", begin);
+            } else {
+                final String modulePath = System.getProperty("fxloader.osgi.eclipse.hook.module-path");
+                final List<FXProviderBundle> providers;
+                // the modules are scanned once, the finder caches them for the resolution
+                final ModuleFinder finder;
+                Set<String> roots = getRootModules();
+
+                long[] begin = report.begin();
+                if (modulePath != null) {
+                    finder = getModulePathFinder(modulePath);
+                    providers = getModulePathProviders(finder, modulePath);
+                    if (roots.isEmpty()) {
+                        roots = providers.stream().map(p -> p.module).collect(Collectors.toSet());
+                    }
+                } else {
+                    providers = getDeployedJavaModuleBundlePaths(this.frameworkContext);
+                    finder = ModuleFinder.of(providers.stream().map(p -> p.path).toArray(i -> new Path[i]));
+                }
+                report.end("collect-providers", begin);
+
+                begin = report.begin();
+                // Using a module path the modifications are not collected from the bundles
+                final JavaModuleLayerModification modifications = collectModifications(
+                        modulePath != null ? null : this.frameworkContext);
+                report.end("collect-modifications", begin);
+                report.modifications(modifications);
+
+                begin = report.begin();
+                if (Boolean.getBoolean("fxloader.osgi.eclipse.hook.lazy-modules")) {
+                    final DemandModuleLayers demandLayers = new DemandModuleLayers(finder, parentClassloader,
+                            modifications);
+                    this.moduleLayer = demandLayers.load(getRootModules());
+                    this.demandModuleLayers = demandLayers;
+                } else if (modulePath != null) {
+                    this.moduleLayer = initModuleLayer(parentClassloader, finder, providers, roots, modifications);
+                } else {
+                    this.moduleLayer = initModuleLayer(parentClassloader, finder, providers,
+                            providers.stream().map(p -> p.module).collect(Collectors.toSet()), modifications);
+                }
+                report.end("create-layer", begin);
+            }
 
             if (FXClassloaderConfigurator.DEBUG) {
                 debugf(funcName, "Module created: %s%n", moduleLayer);
@@ -196,12 +653,21 @@ public class FXClassLoader extends ClassLoaderHook {
         return this.moduleLayer;
     }
 
+    private static Set<String> getRootModules() {
+        final String rootModules = System.getProperty("fxloader.osgi.eclipse.hook.root-modules");
+        if (rootModules == null) {
+            return Collections.emptySet();
+        }
+        return Stream.of(rootModules.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
     private static JavaModuleLayerModification collectModifications(final BundleContext context) {
         final Set<AddReads> reads = new HashSet<>();
         final Set<AddOpenExports> opens = new HashSet<>();
         final Set<AddOpenExports> exports = new HashSet<>();
 
-        final Bundle[] bundles = context.getBundles();
+        final Bundle[] bundles = context == null ? new Bundle[0] : context.getBundles();
         for (final Bundle b : bundles) {
             if ((b.getState() & Bundle.RESOLVED) == Bundle.RESOLVED
                     || (b.getState() & Bundle.ACTIVE) == Bundle.ACTIVE) {
@@ -231,7 +697,12 @@ public class FXClassLoader extends ClassLoaderHook {
             opens.addAll(toOpenExports(addOpens, null));
         }
 
-        return new JavaModuleLayerModification(context.getBundles(), reads, exports, opens);
+        if (Boolean.getBoolean("fxloader.osgi.eclipse.hook.prewarm-toolkit")) {
+            // the toolkit is started by the internal PlatformImpl
+            exports.addAll(toOpenExports("javafx.graphics/com.sun.javafx.application=ALL-UNNAMED", null));
+        }
+
+        return new JavaModuleLayerModification(bundles, reads, exports, opens);
     }
 
     private static String adaptAllUnnamed(final String value, final Bundle bundle) {
@@ -255,13 +726,14 @@ public class FXClassLoader extends ClassLoaderHook {
                 .collect(Collectors.toSet());
     }
 
-    private static ModuleLayer initModuleLayer(final ClassLoader parentClassloader,
-            final List<FXProviderBundle> bundles, final JavaModuleLayerModification modifications) throws Throwable {
+    private static ModuleLayer initModuleLayer(final ClassLoader parentClassloader, final ModuleFinder finder,
+            final List<FXProviderBundle> bundles, final Set<String> modules,
+            final JavaModuleLayerModification modifications) throws Throwable {
         try {
             if (Boolean.getBoolean("fxloader.osgi.eclipse.hook.advanced-modules") || !modifications.isEmpty()) {
-                return advancedModuleLayerBoostrap(parentClassloader, bundles, modifications);
+                return advancedModuleLayerBoostrap(parentClassloader, finder, bundles, modules, modifications);
             } else {
-                return defaultModuleLayerBootstrap(parentClassloader, bundles);
+                return defaultModuleLayerBootstrap(parentClassloader, finder, bundles, modules);
             }
         } catch (final Throwable t) {
             t.printStackTrace();
@@ -270,14 +742,14 @@ public class FXClassLoader extends ClassLoaderHook {
     }
 
     private static ModuleLayer advancedModuleLayerBoostrap(final ClassLoader parentClassloader,
-            final List<FXProviderBundle> bundles, final JavaModuleLayerModification modifications) throws Throwable {
+            final ModuleFinder fxModuleFinder, final List<FXProviderBundle> bundles, final Set<String> modules,
+            final JavaModuleLayerModification modifications) throws Throwable {
         final String funcName = "advancedModuleLayerBoostrap";
         if (FXClassloaderConfigurator.DEBUG) {
             debugf(funcName, "Using advanced layer creation to apply patches%n");
         }
 
         final Path[] paths = bundles.stream().map(p -> p.path).toArray(i -> new Path[i]);
-        final Set<String> modules = bundles.stream().map(p -> p.module).collect(Collectors.toSet());
 
         @SuppressWarnings("deprecation")
         final URL[] urls = Stream.of(paths).map(Path::toFile).map(f -> {
@@ -310,7 +782,6 @@ public class FXClassLoader extends ClassLoaderHook {
             }
         };
 
-        final ModuleFinder fxModuleFinder = ModuleFinder.of(paths);
         final ModuleFinder empty = ModuleFinder.of();
         final ModuleLayer bootLayer = ModuleLayer.boot();
         final Configuration configuration = bootLayer.configuration();
@@ -323,20 +794,52 @@ public class FXClassLoader extends ClassLoaderHook {
         return moduleLayerController.layer();
     }
 
+    private static ModuleLayer packedModuleImageBootstrap(final ClassLoader parentClassloader, final Path imagePath,
+            final JavaModuleLayerModification modifications) throws Throwable {
+        final String funcName = "packedModuleImageBootstrap";
+
+        PackedModuleImage image = null;
+        try {
+            image = PackedModuleImage.open(imagePath);
+            final Set<String> modules = image.moduleNames();
+
+            if (FXClassloaderConfigurator.DEBUG) {
+                debugf(funcName, "Using module image %s%n", image);
+                for (final String module : modules) {
+                    debugf(funcName, "%s => %s%n", module, imagePath);
+                }
+            }
+
+            final ClassLoader c = new PackedModuleImageClassLoader(image, parentClassloader);
+            final ModuleLayer bootLayer = ModuleLayer.boot();
+            final Configuration configuration = bootLayer.configuration().resolve(image.finder(), ModuleFinder.of(),
+                    modules);
+            final Controller moduleLayerController = ModuleLayer.defineModules(configuration,
+                    Arrays.asList(bootLayer), s -> c);
+            modifications.applyConfigurations(moduleLayerController);
+
+            return moduleLayerController.layer();
+        } catch (final Throwable t) {
+            // the image is registered for its URLs, release it (the bootstrap could be retried)
+            if (image != null) {
+                image.close();
+            }
+            t.printStackTrace();
+            throw t;
+        }
+    }
+
     private static ModuleLayer defaultModuleLayerBootstrap(final ClassLoader parentClassloader,
-            final List<FXProviderBundle> bundles) throws Throwable {
+            final ModuleFinder finder, final List<FXProviderBundle> bundles, final Set<String> modules)
+            throws Throwable {
         final String funcName = "defaultModuleLayerBootstrap";
 
-        final Path[] paths = bundles.stream().map(p -> p.path).toArray(i -> new Path[i]);
-        final Set<String> modules = bundles.stream().map(p -> p.module).collect(Collectors.toSet());
-
         if (FXClassloaderConfigurator.DEBUG) {
             for (final FXProviderBundle b : bundles) {
                 debugf(funcName, "%s => %s%n", b.module, b.path);
             }
         }
 
-        final ModuleFinder finder = ModuleFinder.of(paths);
         final ModuleLayer boot = ModuleLayer.boot();
         final Configuration configuration = boot.configuration();
         final ModuleFinder of = ModuleFinder.of();
@@ -346,15 +849,34 @@ public class FXClassLoader extends ClassLoaderHook {
         return layer;
     }
 
-    private static URLConverter getURLConverter(final URL url, final BundleContext ctx) {
+    private static ModuleFinder getModulePathFinder(final String modulePath) {
+        return ModuleFinder.of(Stream.of(modulePath.split(File.pathSeparator)).map(String::trim)
+                .filter(s -> !s.isEmpty()).map(Paths::get).toArray(i -> new Path[i]));
+    }
+
+    private static List<FXProviderBundle> getModulePathProviders(final ModuleFinder finder, final String modulePath) {
+        final String funcName = "getModulePathProviders";
+
+        final List<FXProviderBundle> providers = finder.findAll().stream()
+                .map(ref -> new FXProviderBundle(ref.descriptor().name(), Paths.get(ref.location().get())))
+                .collect(Collectors.toList());
+
+        if (FXClassloaderConfigurator.DEBUG) {
+            debugf(funcName, "Found modules %s on module path '%s'%n", providers, modulePath);
+        }
+
+        return providers;
+    }
+
+    private URLConverter getURLConverter(final URL url, final BundleContext ctx) {
         if (url == null || ctx == null) {
             return null;
         }
 
         final String protocol = url.getProtocol();
-        synchronized (URL_TRACKERS) {
+        synchronized (this.urlTrackers) {
             // if the tracker is not already placed in our "url tracker registry", compute and cache it
-            final ServiceTracker<Object, URLConverter> tracker = URL_TRACKERS.computeIfAbsent(protocol, key -> {
+            final ServiceTracker<Object, URLConverter> tracker = this.urlTrackers.computeIfAbsent(protocol, key -> {
                 // get the right service based on the protocol
                 final Filter filter;
                 try {
@@ -374,7 +896,7 @@ public class FXClassLoader extends ClassLoaderHook {
         }
     }
 
-    private static List<FXProviderBundle> getDeployedJavaModuleBundlePaths(final BundleContext context) {
+    private List<FXProviderBundle> getDeployedJavaModuleBundlePaths(final BundleContext context) {
         final String funcName = "getDeployedJavaModuleBundlePaths";
         if (FXClassloaderConfigurator.DEBUG) {
             debugf(funcName, "Loading libraries from deployed modules%n");
@@ -382,7 +904,9 @@ public class FXClassLoader extends ClassLoaderHook {
 
         final List<FXProviderBundle> paths = new ArrayList<>();
 
-        for (final Bundle b : context.getBundles()) {
+        final Bundle[] bundles = context.getBundles();
+        this.report.bundlesScanned(bundles.length);
+        for (final Bundle b : bundles) {
             final int bundleState = b.getState();
             // skip bundles that are not resolved AND not active
             if ((bundleState & Bundle.RESOLVED) != Bundle.RESOLVED && (bundleState & Bundle.ACTIVE) != Bundle.ACTIVE) {
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.url.URLConstants;
+import org.osgi.service.url.URLStreamHandlerService;
+
+import de.maggu2810.osgi.fxloader.eclipse.jpms.PackedModuleImage;
+
+/**
+ * Activator of the system bundle that binds the module layer of the {@link FXClassLoader} to the framework lifecycle.
+ *
+ * <p>
+ * The module layer is released if the framework is stopped. It registers the URL handler of the module image entries,
+ * too.
+ */
+public class FXClassLoaderActivator implements BundleActivator {
+
+    private final FXClassLoader hook;
+    private ServiceRegistration<URLStreamHandlerService> urlHandler;
+
+    /**
+     * Constructor.
+     *
+     * @param hook the hook to manage
+     */
+    public FXClassLoaderActivator(final FXClassLoader hook) {
+        this.hook = hook;
+    }
+
+    @Override
+    public void start(final BundleContext context) {
+        this.hook.frameworkStarted(context);
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(URLConstants.URL_HANDLER_PROTOCOL, new String[] { PackedModuleImage.PROTOCOL });
+        this.urlHandler = context.registerService(URLStreamHandlerService.class,
+                new PackedModuleImageURLHandlerService(), properties);
+    }
+
+    @Override
+    public void stop(final BundleContext context) {
+        if (this.urlHandler != null) {
+            this.urlHandler.unregister();
+            this.urlHandler = null;
+        }
+        this.hook.teardown();
+    }
+}
@@ -45,7 +45,9 @@ public class FXClassloaderConfigurator implements HookConfigurator {
             return;
         }
 
-        hookRegistry.addClassLoaderHook(new FXClassLoader());
+        final FXClassLoader hook = new FXClassLoader();
+        hookRegistry.addClassLoaderHook(hook);
+        hookRegistry.addActivatorHookFactory(() -> new FXClassLoaderActivator(hook));
     }
 
 }
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+
+import org.osgi.service.url.AbstractURLStreamHandlerService;
+
+import de.maggu2810.osgi.fxloader.eclipse.jpms.PackedModuleImage;
+
+/**
+ * URL stream handler service for the entries of a {@link PackedModuleImage}, so the framework could resolve its URLs
+ * created from strings.
+ */
+class PackedModuleImageURLHandlerService extends AbstractURLStreamHandlerService {
+    @Override
+    public URLConnection openConnection(final URL url) throws IOException {
+        return PackedModuleImage.openConnection(url);
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse.jpms;
+
+import java.lang.ModuleLayer.Controller;
+import java.lang.module.Configuration;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import de.maggu2810.osgi.fxloader.eclipse.FXClassloaderConfigurator;
+
+/**
+ * Stack of module layers that are created on demand.
+ *
+ * <p>
+ * Modules are not resolved up front. A routing index maps every package of a module that has not been loaded yet to
+ * its module. Loading a module resolves it (and its not yet loaded dependencies) in a new child layer on top of the
+ * already loaded ones.
+ *
+ * <p>
+ * The routing index could be queried without locking, loading modules is serialized.
+ */
+public class DemandModuleLayers {
+    private final ModuleFinder finder;
+    private final ClassLoader parentClassloader;
+    private final JavaModuleLayerModification modifications;
+    private final Map<String, String> pendingPackages = new ConcurrentHashMap<>();
+    private ModuleLayer top = ModuleLayer.boot();
+
+    /**
+     * Constructor.
+     *
+     * @param finder the finder for all modules that could be loaded
+     * @param parentClassloader the parent classloader of the classloaders of the created layers
+     * @param modifications the modifications to apply to every created layer
+     */
+    public DemandModuleLayers(final ModuleFinder finder, final ClassLoader parentClassloader,
+            final JavaModuleLayerModification modifications) {
+        this.finder = finder;
+        this.parentClassloader = parentClassloader;
+        this.modifications = modifications;
+        for (final ModuleReference ref : finder.findAll()) {
+            final String module = ref.descriptor().name();
+            for (final String pn : ref.descriptor().packages()) {
+                this.pendingPackages.put(pn, module);
+            }
+        }
+    }
+
+    /**
+     * Get the module that contains a package that has not been loaded yet.
+     *
+     * @param pn the package name
+     * @return the module name or null if no pending module contains the package
+     */
+    public String getPendingModule(final String pn) {
+        return this.pendingPackages.get(pn);
+    }
+
+    /**
+     * Check if there are modules that have not been loaded yet.
+     *
+     * @return true if there are pending modules
+     */
+    public boolean hasPendingModules() {
+        return !this.pendingPackages.isEmpty();
+    }
+
+    /**
+     * Load modules.
+     *
+     * <p>
+     * Modules that are already loaded or that are unknown are ignored.
+     *
+     * @param modules the names of the modules to load
+     * @return the created layer or the boot layer if no module needs to be loaded
+     */
+    public ModuleLayer load(final Set<String> modules) {
+        return load(modules, layer -> {
+        });
+    }
+
+    /**
+     * Load modules.
+     *
+     * <p>
+     * Modules that are already loaded or that are unknown are ignored.
+     *
+     * @param modules the names of the modules to load
+     * @param loaded called with the created layer before its packages are removed from the routing index, so a
+     *            concurrent lookup either finds a package pending or published by the callback
+     * @return the created layer or the boot layer if no module needs to be loaded
+     */
+    public synchronized ModuleLayer load(final Set<String> modules, final Consumer<ModuleLayer> loaded) {
+        final String funcName = "load";
+
+        final Set<String> roots = modules.stream() //
+                .filter(m -> !this.top.findModule(m).isPresent()) //
+                .filter(m -> {
+                    if (this.finder.find(m).isPresent()) {
+                        return true;
+                    }
+                    if (FXClassloaderConfigurator.DEBUG) {
+                        System.err.println("DemandModuleLayers#" + funcName + " - Module '" + m //$NON-NLS-1$ //$NON-NLS-2$
+                                + "' is not deployed."); //$NON-NLS-1$
+                    }
+                    return false;
+                }).collect(Collectors.toSet());
+        if (roots.isEmpty()) {
+            return ModuleLayer.boot();
+        }
+
+        // Use the finder as "after" finder, so modules of the parent layers are not resolved again
+        final Configuration configuration = this.top.configuration().resolve(ModuleFinder.of(), this.finder, roots);
+        final Controller controller = ModuleLayer.defineModulesWithOneLoader(configuration, Arrays.asList(this.top),
+                this.parentClassloader);
+        this.modifications.applyConfigurations(controller);
+        this.top = controller.layer();
+        loaded.accept(this.top);
+
+        for (final Module m : this.top.modules()) {
+            if (FXClassloaderConfigurator.DEBUG) {
+                System.err.println("DemandModuleLayers#" + funcName + " - Loaded module '" + m.getName() + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            m.getPackages().forEach(this.pendingPackages::remove);
+        }
+
+        return this.top;
+    }
+}
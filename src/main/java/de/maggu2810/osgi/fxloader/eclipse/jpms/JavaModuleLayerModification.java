@@ -12,11 +12,13 @@
 package de.maggu2810.osgi.fxloader.eclipse.jpms;
 
 import java.lang.ModuleLayer.Controller;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Version;
@@ -32,18 +34,48 @@ public class JavaModuleLayerModification {
 
     private final Bundle[] bundles;
 
+    private final AtomicInteger applied = new AtomicInteger();
+
+    // directives that could not be applied yet, because their source or target module is not loaded yet
+    private final Set<AddReads> pendingReads;
+    private final Set<AddOpenExports> pendingExports;
+    private final Set<AddOpenExports> pendingOpens;
+    private final List<Controller> controllers = new ArrayList<>();
+
     public JavaModuleLayerModification(final Bundle[] bundles, final Set<AddReads> reads,
             final Set<AddOpenExports> exports, final Set<AddOpenExports> opens) {
         this.bundles = bundles;
         this.reads = reads;
         this.exports = exports;
         this.opens = opens;
+        this.pendingReads = new LinkedHashSet<>(reads);
+        this.pendingExports = new LinkedHashSet<>(exports);
+        this.pendingOpens = new LinkedHashSet<>(opens);
     }
 
     public boolean isEmpty() {
         return this.reads.isEmpty() && this.exports.isEmpty() && this.opens.isEmpty();
     }
 
+    /**
+     * Get the number of directives that have been applied to module layers.
+     *
+     * @return the number of applied directives
+     */
+    public int getAppliedCount() {
+        return this.applied.get();
+    }
+
+    /**
+     * Get the number of directives that have not been applied yet, because their source or target module has not been
+     * loaded yet.
+     *
+     * @return the number of pending directives
+     */
+    public synchronized int getPendingCount() {
+        return this.pendingReads.size() + this.pendingExports.size() + this.pendingOpens.size();
+    }
+
     public static JavaModuleLayerModification empty() {
         return new JavaModuleLayerModification(new Bundle[0], Collections.emptySet(), Collections.emptySet(),
                 Collections.emptySet());
@@ -59,7 +91,7 @@ public class JavaModuleLayerModification {
             final long l = Long.parseLong(id);
             for (final Bundle b : this.bundles) {
                 if (b.getBundleId() == l) {
-                    return b.adapt(BundleWiring.class).getClassLoader().getUnnamedModule();
+                    return getUnnamedModule(b);
                 }
             }
         } else if (value.startsWith("BUNDLE(")) { //$NON-NLS-1$
@@ -71,7 +103,7 @@ public class JavaModuleLayerModification {
 
                 for (final Bundle b : this.bundles) {
                     if (b.getSymbolicName().equals(symbolicName) && version.equals(b.getVersion())) {
-                        return b.adapt(BundleWiring.class).getClassLoader().getUnnamedModule();
+                        return getUnnamedModule(b);
                     }
                 }
             }
@@ -79,103 +111,115 @@ public class JavaModuleLayerModification {
         return null;
     }
 
-    public void applyConfigurations(final Controller controller) {
-        final Map<String, Module> map = new HashMap<>();
-        for (final AddOpenExports e : this.exports) {
-            final Module sourceModule = map.computeIfAbsent(e.source,
-                    n -> controller.layer().findModule(n).orElse(null));
-            Module targetModule = null;
-            if (e.target.equals("ALL-UNNAMED")) { //$NON-NLS-1$
-                targetModule = getUnnamedModule();
-            } else if (e.target.startsWith("BUNDLE")) { //$NON-NLS-1$
-                targetModule = getBundleUnnamed(e.target);
-            } else {
-                targetModule = map.computeIfAbsent(e.target, n -> {
-                    return Stream.of(controller.layer(), ModuleLayer.boot()) //
-                            .map(l -> l.findModule(n).orElse(null)) //
-                            .findFirst().orElse(null);
-                });
+    private static Module getUnnamedModule(final Bundle bundle) {
+        // the bundle is not resolved (yet)
+        final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+        return wiring == null || wiring.getClassLoader() == null ? null : wiring.getClassLoader().getUnnamedModule();
+    }
+
+    private static Module getLayerModule(final Controller controller, final String name) {
+        // only modules defined by the controlled layer could be modified, not the ones of parent layers
+        return controller.layer().findModule(name).filter(m -> m.getLayer() == controller.layer()).orElse(null);
+    }
+
+    private Controller getSourceController(final String name) {
+        for (final Controller controller : this.controllers) {
+            if (getLayerModule(controller, name) != null) {
+                return controller;
             }
+        }
+        return null;
+    }
+
+    private Module getTargetModule(final Controller controller, final String target) {
+        if (target.equals("ALL-UNNAMED")) { //$NON-NLS-1$
+            return getUnnamedModule();
+        } else if (target.startsWith("BUNDLE")) { //$NON-NLS-1$
+            return getBundleUnnamed(target);
+        } else {
+            // the latest layer sees the modules of all former layers (and the boot layer)
+            return controller.layer().findModule(target).orElse(null);
+        }
+    }
 
-            if (sourceModule == null) {
+    /**
+     * Apply the directives to a new module layer.
+     *
+     * <p>
+     * Directives whose source or target module is not loaded yet are kept and applied as soon as a later layer
+     * defines the missing module. The source module is modified by the controller of the layer that defines it.
+     *
+     * @param controller the controller of the new layer
+     */
+    public synchronized void applyConfigurations(final Controller controller) {
+        this.controllers.add(controller);
+
+        for (final Iterator<AddOpenExports> it = this.pendingExports.iterator(); it.hasNext();) {
+            final AddOpenExports e = it.next();
+            final Controller sourceController = getSourceController(e.source);
+            final Module targetModule = getTargetModule(controller, e.target);
+
+            if (sourceController == null) {
                 if (FXClassloaderConfigurator.DEBUG) {
                     System.err.println("JavaModuleLayerModification#applyConfigurations - Source module '" + e.source //$NON-NLS-1$
-                            + "' is not dynamically loaded. Could not export '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
+                            + "' is not loaded yet. Deferring export of '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
                 }
             } else if (targetModule == null) {
                 if (FXClassloaderConfigurator.DEBUG) {
                     System.err.println("JavaModuleLayerModification#applyConfigurations - Target module '" + e.target //$NON-NLS-1$
-                            + "' is not found. Could not export '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
+                            + "' is not loaded yet. Deferring export of '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
                 }
             } else {
                 if (FXClassloaderConfigurator.DEBUG) {
                     System.err.println("JavaModuleLayerModification#applyConfigurations - Exporting '" + e + "'"); //$NON-NLS-1$ //$NON-NLS-2$
                 }
-                controller.addExports(sourceModule, e.pn, targetModule);
+                sourceController.addExports(getLayerModule(sourceController, e.source), e.pn, targetModule);
+                this.applied.incrementAndGet();
+                it.remove();
             }
         }
 
-        for (final AddOpenExports e : this.opens) {
-            final Module sourceModule = map.computeIfAbsent(e.source,
-                    n -> controller.layer().findModule(n).orElse(null));
-            Module targetModule = null;
-            if (e.target.equals("ALL-UNNAMED")) { //$NON-NLS-1$
-                targetModule = getUnnamedModule();
-            } else if (e.target.startsWith("BUNDLE")) { //$NON-NLS-1$
-                targetModule = getBundleUnnamed(e.target);
-            } else {
-                targetModule = map.computeIfAbsent(e.target, n -> {
-                    return Stream.of(controller.layer(), ModuleLayer.boot()) //
-                            .map(l -> l.findModule(n).orElse(null)) //
-                            .findFirst().orElse(null);
-                });
-            }
+        for (final Iterator<AddOpenExports> it = this.pendingOpens.iterator(); it.hasNext();) {
+            final AddOpenExports e = it.next();
+            final Controller sourceController = getSourceController(e.source);
+            final Module targetModule = getTargetModule(controller, e.target);
 
-            if (sourceModule == null) {
+            if (sourceController == null) {
                 if (FXClassloaderConfigurator.DEBUG) {
                     System.err.println("JavaModuleLayerModification#applyConfigurations - Source module '" + e.source //$NON-NLS-1$
-                            + "' is not dynamically loaded. Could not open '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
+                            + "' is not loaded yet. Deferring open of '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
                 }
-
             } else if (targetModule == null) {
                 if (FXClassloaderConfigurator.DEBUG) {
                     System.err.println("JavaModuleLayerModification#applyConfigurations - Target module '" + e.target //$NON-NLS-1$
-                            + "' is not found. Could not open '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
+                            + "' is not loaded yet. Deferring open of '" + e.pn + "'."); //$NON-NLS-1$ //$NON-NLS-2$
                 }
-
             } else {
-                controller.addOpens(sourceModule, e.pn, targetModule);
+                sourceController.addOpens(getLayerModule(sourceController, e.source), e.pn, targetModule);
+                this.applied.incrementAndGet();
+                it.remove();
             }
         }
 
-        for (final AddReads r : this.reads) {
-            final Module sourceModule = map.computeIfAbsent(r.source,
-                    n -> controller.layer().findModule(n).orElse(null));
-            Module targetModule = null;
-            if (r.target.equals("ALL-UNNAMED")) { //$NON-NLS-1$
-                targetModule = getUnnamedModule();
-            } else if (r.target.startsWith("BUNDLE")) { //$NON-NLS-1$
-                targetModule = getBundleUnnamed(r.target);
-            } else {
-                targetModule = map.computeIfAbsent(r.target, n -> {
-                    return Stream.of(controller.layer(), ModuleLayer.boot()) //
-                            .map(l -> l.findModule(n).orElse(null)) //
-                            .findFirst().orElse(null);
-                });
-            }
+        for (final Iterator<AddReads> it = this.pendingReads.iterator(); it.hasNext();) {
+            final AddReads r = it.next();
+            final Controller sourceController = getSourceController(r.source);
+            final Module targetModule = getTargetModule(controller, r.target);
 
-            if (sourceModule == null) {
+            if (sourceController == null) {
                 if (FXClassloaderConfigurator.DEBUG) {
                     System.err.println("JavaModuleLayerModification#applyConfigurations - Source module '" + r.source //$NON-NLS-1$
-                            + "' is not dynamically loaded. Could not add read edge."); //$NON-NLS-1$
+                            + "' is not loaded yet. Deferring read edge."); //$NON-NLS-1$
                 }
             } else if (targetModule == null) {
                 if (FXClassloaderConfigurator.DEBUG) {
                     System.err.println("JavaModuleLayerModification#applyConfigurations - Target module '" + r.target //$NON-NLS-1$
-                            + "' is not found. Could not add read edge."); //$NON-NLS-1$
+                            + "' is not loaded yet. Deferring read edge."); //$NON-NLS-1$
                 }
             } else {
-                controller.addReads(sourceModule, targetModule);
+                sourceController.addReads(getLayerModule(sourceController, r.source), targetModule);
+                this.applied.incrementAndGet();
+                it.remove();
             }
         }
     }
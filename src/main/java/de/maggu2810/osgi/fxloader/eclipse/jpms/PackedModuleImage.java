@@ -0,0 +1,615 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse.jpms;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * A single memory mapped file holding the content of several Java modules.
+ *
+ * <p>
+ * Layout (all numbers big endian):
+ *
+ * <pre>
+ * int magic, int version
+ * data of all entries
+ * int moduleCount, moduleCount * (int length, UTF-8 name)
+ * int entryCount, entryCount * (int length, UTF-8 name, int module, long offset, int size)
+ * long indexOffset, int magic
+ * </pre>
+ *
+ * The entry index is sorted by name (and module index for equal names), so lookups are binary searches.
+ *
+ * <p>
+ * Entries are addressed by URLs of the form "fxpack://&lt;image id&gt;/&lt;module&gt;/&lt;entry name&gt;", so relative
+ * URLs could be resolved against them. URLs created from strings are handled as long as the image is open (see
+ * {@link PackedModuleImageURLStreamHandlerProvider}).
+ */
+public final class PackedModuleImage implements Closeable {
+
+    private static final int MAGIC = 0x46585049; // "FXPI"
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    /**
+     * The URL protocol used for entries served from an image.
+     */
+    public static final String PROTOCOL = "fxpack"; //$NON-NLS-1$
+
+    private static final String MODULE_INFO = "module-info.class"; //$NON-NLS-1$
+
+    private static final Set<String> KEYWORDS = Set.of("abstract", "assert", "boolean", "break", "byte", "case", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+            "catch", "char", "class", "const", "continue", "default", "do", "double", "else", "enum", "extends", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$
+            "false", "final", "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$
+            "interface", "long", "native", "new", "null", "package", "private", "protected", "public", "return", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+            "short", "static", "strictfp", "super", "switch", "synchronized", "this", "throw", "throws", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$
+            "transient", "true", "try", "void", "volatile", "while", "_"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+
+    private static final Map<String, PackedModuleImage> OPEN_IMAGES = new ConcurrentHashMap<>();
+    private static final AtomicInteger IMAGE_IDS = new AtomicInteger();
+    private static final URLStreamHandler HANDLER = new PackedModuleImageURLStreamHandler();
+
+    private final String id = "image" + IMAGE_IDS.incrementAndGet(); //$NON-NLS-1$
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final String[] modules;
+    private final String[] names;
+    private final int[] entryModules;
+    private final long[] offsets;
+    private final int[] sizes;
+
+    private PackedModuleImage(final Path path, final ByteBuffer buffer, final String[] modules, final String[] names,
+            final int[] entryModules, final long[] offsets, final int[] sizes) {
+        this.path = path;
+        this.buffer = buffer;
+        this.modules = modules;
+        this.names = names;
+        this.entryModules = entryModules;
+        this.offsets = offsets;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Map an image file into memory.
+     *
+     * <p>
+     * The file channel is closed after mapping, so an open image does not hold a file descriptor.
+     *
+     * @param path the image file
+     * @return the image
+     * @throws IOException if the file could not be read or is not a valid image
+     */
+    public static PackedModuleImage open(final Path path) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Module image " + path + " exceeds the supported size"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+        }
+
+        final int limit = buffer.limit();
+        if (limit < 2 * Integer.BYTES + TRAILER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getInt(limit - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a module image: " + path); //$NON-NLS-1$
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported module image version in " + path); //$NON-NLS-1$
+        }
+
+        final int dataEnd = limit - TRAILER_SIZE;
+        final long indexOffset = buffer.getLong(dataEnd);
+        check(indexOffset >= 2 * Integer.BYTES && indexOffset <= dataEnd, path);
+        final ByteBuffer index = buffer.duplicate();
+        index.position((int) indexOffset);
+        index.limit(dataEnd);
+
+        try {
+            final int moduleCount = index.getInt();
+            // every module name needs at least its length
+            check(moduleCount >= 0 && moduleCount <= index.remaining() / Integer.BYTES, path);
+            final String[] modules = new String[moduleCount];
+            for (int i = 0; i < modules.length; i++) {
+                modules[i] = readString(index, path);
+            }
+
+            final int entryCount = index.getInt();
+            // every entry needs at least its name length, module, offset and size
+            check(entryCount >= 0 && entryCount <= index.remaining() / (3 * Integer.BYTES + Long.BYTES), path);
+            final String[] names = new String[entryCount];
+            final int[] entryModules = new int[entryCount];
+            final long[] offsets = new long[entryCount];
+            final int[] sizes = new int[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                names[i] = readString(index, path);
+                entryModules[i] = index.getInt();
+                offsets[i] = index.getLong();
+                sizes[i] = index.getInt();
+                check(entryModules[i] >= 0 && entryModules[i] < moduleCount, path);
+                check(offsets[i] >= 2 * Integer.BYTES && sizes[i] >= 0 && offsets[i] + sizes[i] <= indexOffset, path);
+                check(i == 0 || names[i - 1].compareTo(names[i]) <= 0, path);
+            }
+
+            final PackedModuleImage image = new PackedModuleImage(path, buffer, modules, names, entryModules, offsets,
+                    sizes);
+            OPEN_IMAGES.put(image.id, image);
+            return image;
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated module image index in " + path, e); //$NON-NLS-1$
+        }
+    }
+
+    private static void check(final boolean valid, final Path path) throws IOException {
+        if (!valid) {
+            throw new IOException("Corrupt module image index in " + path); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Close the image.
+     *
+     * <p>
+     * URLs of the image could not be opened anymore, the mapping is released as soon as the image is not referenced.
+     */
+    @Override
+    public void close() {
+        OPEN_IMAGES.remove(this.id, this);
+    }
+
+    /**
+     * Pack the given modular (or automatic module) JARs into a single image file.
+     *
+     * @param target the image file to write
+     * @param jars the JAR files to pack
+     * @throws IOException on read or write errors
+     */
+    public static void pack(final Path target, final Collection<Path> jars) throws IOException {
+        final Map<String, Path> moduleJars = new HashMap<>();
+        for (final ModuleReference ref : ModuleFinder.of(jars.toArray(new Path[jars.size()])).findAll()) {
+            moduleJars.put(ref.descriptor().name(), Paths.get(ref.location().get()));
+        }
+        final List<String> moduleNames = moduleJars.keySet().stream().sorted().collect(Collectors.toList());
+
+        final List<PackedEntry> entries = new ArrayList<>();
+        try (OutputStream os = Files.newOutputStream(target);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long offset = 2 * Integer.BYTES;
+
+            for (int module = 0; module < moduleNames.size(); module++) {
+                try (JarFile jar = new JarFile(moduleJars.get(moduleNames.get(module)).toFile(), true,
+                        ZipFile.OPEN_READ, Runtime.version())) {
+                    final List<JarEntry> jarEntries = jar.versionedStream().filter(e -> !e.isDirectory())
+                            .collect(Collectors.toList());
+                    for (final JarEntry e : jarEntries) {
+                        final byte[] data;
+                        try (InputStream in = jar.getInputStream(e)) {
+                            data = in.readAllBytes();
+                        }
+                        out.write(data);
+                        entries.add(new PackedEntry(e.getName(), module, offset, data.length));
+                        offset += data.length;
+                    }
+                }
+            }
+
+            entries.sort(Comparator.<PackedEntry, String>comparing(e -> e.name).thenComparingInt(e -> e.module));
+
+            final long indexOffset = offset;
+            if (indexOffset > Integer.MAX_VALUE) {
+                throw new IOException("Module image " + target + " exceeds the supported size"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            out.writeInt(moduleNames.size());
+            for (final String name : moduleNames) {
+                writeString(out, name);
+            }
+            out.writeInt(entries.size());
+            for (final PackedEntry e : entries) {
+                writeString(out, e.name);
+                out.writeInt(e.module);
+                out.writeLong(e.offset);
+                out.writeInt(e.size);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+        }
+    }
+
+    /**
+     * Command line entry point to create an image.
+     *
+     * @param args the target image file followed by the JAR files to pack
+     * @throws IOException on read or write errors
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PackedModuleImage <image> <jar>..."); //$NON-NLS-1$
+            System.exit(1);
+        }
+        pack(Paths.get(args[0]), Stream.of(args).skip(1).map(Paths::get).collect(Collectors.toList()));
+    }
+
+    private static String readString(final ByteBuffer buffer, final Path path) throws IOException {
+        final int length = buffer.getInt();
+        check(length >= 0 && length <= buffer.remaining(), path);
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Get the names of all modules contained in the image.
+     *
+     * @return the module names
+     */
+    public Set<String> moduleNames() {
+        return new LinkedHashSet<>(List.of(this.modules));
+    }
+
+    /**
+     * Get the content of an entry.
+     *
+     * @param name the entry name (e.g. "javafx/scene/Node.class")
+     * @return a read-only buffer of the entry content or null if the image does not contain the entry
+     */
+    public ByteBuffer read(final String name) {
+        final int idx = first(name);
+        return idx < 0 ? null : slice(idx);
+    }
+
+    /**
+     * Get the content of an entry of a specific module.
+     *
+     * @param module the module name
+     * @param name the entry name
+     * @return a read-only buffer of the entry content or null if the module does not contain the entry
+     */
+    public ByteBuffer read(final String module, final String name) {
+        final int idx = find(module, name);
+        return idx < 0 ? null : slice(idx);
+    }
+
+    /**
+     * Get the URL of an entry.
+     *
+     * @param name the entry name
+     * @return the URL or null if the image does not contain the entry
+     */
+    public URL findResource(final String name) {
+        final int idx = first(name);
+        return idx < 0 ? null : toURL(idx);
+    }
+
+    /**
+     * Get the URL of an entry of a specific module.
+     *
+     * @param module the module name
+     * @param name the entry name
+     * @return the URL or null if the module does not contain the entry
+     */
+    public URL findResource(final String module, final String name) {
+        final int idx = find(module, name);
+        return idx < 0 ? null : toURL(idx);
+    }
+
+    /**
+     * Get the URLs of all entries using the given name.
+     *
+     * @param name the entry name
+     * @return the URLs (in module order)
+     */
+    public List<URL> findResources(final String name) {
+        final int idx = first(name);
+        if (idx < 0) {
+            return Collections.emptyList();
+        }
+        final List<URL> urls = new ArrayList<>();
+        for (int i = idx; i < this.names.length && this.names[i].equals(name); i++) {
+            urls.add(toURL(i));
+        }
+        return urls;
+    }
+
+    /**
+     * Get a module finder for all modules contained in the image.
+     *
+     * @return the module finder
+     */
+    public ModuleFinder finder() {
+        final Map<String, ModuleReference> references = new HashMap<>();
+        for (int module = 0; module < this.modules.length; module++) {
+            references.put(this.modules[module], new PackedModuleReference(descriptor(module)));
+        }
+        final Set<ModuleReference> all = new HashSet<>(references.values());
+        return new ModuleFinder() {
+            @Override
+            public Optional<ModuleReference> find(final String name) {
+                return Optional.ofNullable(references.get(name));
+            }
+
+            @Override
+            public Set<ModuleReference> findAll() {
+                return all;
+            }
+        };
+    }
+
+    private ModuleDescriptor descriptor(final int module) {
+        // like the module path: every entry outside of META-INF whose directory is a legal package name
+        final Set<String> packages = IntStream.range(0, this.names.length)
+                .filter(i -> this.entryModules[i] == module).mapToObj(i -> this.names[i])
+                .filter(n -> !n.startsWith("META-INF/") && n.lastIndexOf('/') > 0) //$NON-NLS-1$
+                .map(n -> n.substring(0, n.lastIndexOf('/')).replace('/', '.'))
+                .filter(PackedModuleImage::isPackageName).collect(Collectors.toSet());
+        final int idx = find(this.modules[module], MODULE_INFO);
+        if (idx < 0) {
+            return ModuleDescriptor.newAutomaticModule(this.modules[module]).packages(packages).build();
+        }
+        return ModuleDescriptor.read(slice(idx), () -> packages);
+    }
+
+    private static boolean isPackageName(final String name) {
+        for (final String part : name.split("\\.", -1)) { //$NON-NLS-1$
+            if (part.isEmpty() || !Character.isJavaIdentifierStart(part.codePointAt(0)) || KEYWORDS.contains(part)) {
+                return false;
+            }
+            if (!part.codePoints().skip(1).allMatch(Character::isJavaIdentifierPart)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int first(final String name) {
+        int idx = binarySearch(name);
+        if (idx < 0) {
+            return -1;
+        }
+        while (idx > 0 && this.names[idx - 1].equals(name)) {
+            idx--;
+        }
+        return idx;
+    }
+
+    private int find(final String module, final String name) {
+        final int idx = first(name);
+        if (idx < 0) {
+            return -1;
+        }
+        for (int i = idx; i < this.names.length && this.names[i].equals(name); i++) {
+            if (this.modules[this.entryModules[i]].equals(module)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int binarySearch(final String name) {
+        int low = 0;
+        int high = this.names.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = this.names[mid].compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private ByteBuffer slice(final int idx) {
+        final ByteBuffer b = this.buffer.duplicate();
+        b.position((int) this.offsets[idx]);
+        b.limit((int) this.offsets[idx] + this.sizes[idx]);
+        return b.slice();
+    }
+
+    private URL toURL(final int idx) {
+        try {
+            return new URL(PROTOCOL, this.id, -1, "/" + this.modules[this.entryModules[idx]] + "/" + this.names[idx], //$NON-NLS-1$ //$NON-NLS-2$
+                    HANDLER);
+        } catch (final MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Open a connection to an image entry.
+     *
+     * @param url the URL of the entry ("fxpack://&lt;image id&gt;/&lt;module&gt;/&lt;entry name&gt;")
+     * @return the connection
+     * @throws IOException if the image is not open or does not contain the entry
+     */
+    public static URLConnection openConnection(final URL url) throws IOException {
+        final PackedModuleImage image = OPEN_IMAGES.get(url.getHost());
+        if (image == null) {
+            throw new IOException("Module image of " + url + " is not open"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        final String path = url.getPath();
+        final int moduleEnd = path.indexOf('/', 1);
+        final int idx = path.startsWith("/") && moduleEnd > 1 //$NON-NLS-1$
+                ? image.find(path.substring(1, moduleEnd), path.substring(moduleEnd + 1))
+                : -1;
+        if (idx < 0) {
+            throw new FileNotFoundException(url.toString());
+        }
+        return new URLConnection(url) {
+            @Override
+            public void connect() {
+                this.connected = true;
+            }
+
+            @Override
+            public int getContentLength() {
+                return image.sizes[idx];
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return image.sizes[idx];
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new ByteBufferInputStream(image.slice(idx));
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "PackedModuleImage [id=" + this.id + ", path=" + this.path + ", modules=" + this.modules.length + ", entries=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + this.names.length + "]"; //$NON-NLS-1$
+    }
+
+    private static class PackedEntry {
+        final String name;
+        final int module;
+        final long offset;
+        final int size;
+
+        PackedEntry(final String name, final int module, final long offset, final int size) {
+            this.name = name;
+            this.module = module;
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    private class PackedModuleReference extends ModuleReference {
+        PackedModuleReference(final ModuleDescriptor descriptor) {
+            super(descriptor, PackedModuleImage.this.path.toUri());
+        }
+
+        @Override
+        public ModuleReader open() {
+            final String module = descriptor().name();
+            return new ModuleReader() {
+                @Override
+                public Optional<URI> find(final String name) throws IOException {
+                    final URL url = findResource(module, name);
+                    try {
+                        return url == null ? Optional.empty() : Optional.of(url.toURI());
+                    } catch (final URISyntaxException e) {
+                        throw new IOException(e);
+                    }
+                }
+
+                @Override
+                public Optional<InputStream> open(final String name) {
+                    return read(name).map(ByteBufferInputStream::new);
+                }
+
+                @Override
+                public Optional<ByteBuffer> read(final String name) {
+                    return Optional.ofNullable(PackedModuleImage.this.read(module, name));
+                }
+
+                @Override
+                public Stream<String> list() {
+                    return IntStream.range(0, PackedModuleImage.this.names.length)
+                            .filter(i -> PackedModuleImage.this.modules[PackedModuleImage.this.entryModules[i]]
+                                    .equals(module))
+                            .mapToObj(i -> PackedModuleImage.this.names[i]);
+                }
+
+                @Override
+                public void close() {
+                    /* intentional empty, the mapping is shared */
+                }
+            };
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+}
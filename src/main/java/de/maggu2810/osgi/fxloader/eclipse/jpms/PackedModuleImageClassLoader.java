@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse.jpms;
+
+import java.io.Closeable;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * Classloader serving classes and resources of all modules of a {@link PackedModuleImage}.
+ *
+ * <p>
+ * Closing the classloader closes the image, so the URLs of its resources could not be opened anymore.
+ */
+public class PackedModuleImageClassLoader extends ClassLoader implements Closeable {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final PackedModuleImage image;
+
+    /**
+     * Constructor.
+     *
+     * @param image the image to serve classes and resources from
+     * @param parent the parent classloader
+     */
+    public PackedModuleImageClassLoader(final PackedModuleImage image, final ClassLoader parent) {
+        super("fxloader-module-image", parent); //$NON-NLS-1$
+        this.image = image;
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        final ByteBuffer data = this.image.read(toEntryName(name));
+        if (data == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, data, null);
+    }
+
+    @Override
+    protected Class<?> findClass(final String moduleName, final String name) {
+        if (moduleName == null) {
+            try {
+                return findClass(name);
+            } catch (final ClassNotFoundException e) {
+                return null;
+            }
+        }
+        synchronized (getClassLoadingLock(name)) {
+            final Class<?> c = findLoadedClass(name);
+            if (c != null) {
+                return c.getModule().getName().equals(moduleName) ? c : null;
+            }
+            final ByteBuffer data = this.image.read(moduleName, toEntryName(name));
+            return data == null ? null : defineClass(name, data, null);
+        }
+    }
+
+    @Override
+    protected URL findResource(final String name) {
+        return this.image.findResource(name);
+    }
+
+    @Override
+    protected URL findResource(final String moduleName, final String name) {
+        return moduleName == null ? this.image.findResource(name) : this.image.findResource(moduleName, name);
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(final String name) {
+        return Collections.enumeration(this.image.findResources(name));
+    }
+
+    @Override
+    public void close() {
+        this.image.close();
+    }
+
+    private static String toEntryName(final String className) {
+        return className.replace('.', '/') + ".class"; //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse.jpms;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+
+/**
+ * Handler of the URLs of {@link PackedModuleImage} entries.
+ */
+class PackedModuleImageURLStreamHandler extends URLStreamHandler {
+    @Override
+    protected URLConnection openConnection(final URL url) throws IOException {
+        return PackedModuleImage.openConnection(url);
+    }
+}
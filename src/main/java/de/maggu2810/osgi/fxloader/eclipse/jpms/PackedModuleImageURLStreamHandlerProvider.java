@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse.jpms;
+
+import java.net.URLStreamHandler;
+import java.net.spi.URLStreamHandlerProvider;
+
+/**
+ * Provider of the handler of the {@link PackedModuleImage} URLs.
+ *
+ * <p>
+ * Makes URLs created from strings (e.g. relative URLs or URLs that have been converted to a string or URI) resolvable
+ * if the framework is loaded by the system classloader. Inside the framework the handler is registered as URL stream
+ * handler service, too.
+ */
+public class PackedModuleImageURLStreamHandlerProvider extends URLStreamHandlerProvider {
+    @Override
+    public URLStreamHandler createURLStreamHandler(final String protocol) {
+        return PackedModuleImage.PROTOCOL.equals(protocol) ? new PackedModuleImageURLStreamHandler() : null;
+    }
+}
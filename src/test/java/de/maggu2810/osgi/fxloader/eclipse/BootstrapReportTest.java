@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BootstrapReportTest {
+
+    private static final String[] PROPERTIES = { "fxloader.osgi.eclipse.hook.report",
+            "fxloader.osgi.eclipse.hook.report.budgets", "fxloader.osgi.eclipse.hook.report.fail-on-budget" };
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() {
+        this.file = this.tmp.getRoot().toPath().resolve("report.json");
+        System.setProperty("fxloader.osgi.eclipse.hook.report", this.file.toString());
+    }
+
+    @After
+    public void tearDown() {
+        for (final String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+    }
+
+    @Test
+    public void disabledWithoutFile() {
+        System.clearProperty("fxloader.osgi.eclipse.hook.report");
+        final BootstrapReport report = BootstrapReport.create();
+        assertFalse(report.isEnabled());
+        report.end("bootstrap", report.begin());
+        report.classServed("javafx.stage.Stage");
+        report.complete();
+        assertFalse(Files.exists(this.file));
+    }
+
+    @Test
+    public void budgets() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.report.budgets", "slow=0, fast = 600000,invalid,broken=x");
+        final BootstrapReport report = BootstrapReport.create();
+        measure(report, "slow");
+        measure(report, "fast");
+        measure(report, "unlimited");
+        report.write();
+
+        final String json = read();
+        assertPhase(json, "slow", ", \"budgetMillis\": 0, \"exceeded\": true");
+        assertPhase(json, "fast", ", \"budgetMillis\": 600000, \"exceeded\": false");
+        assertPhase(json, "unlimited", "");
+        assertFalse(json, json.contains("broken"));
+        assertTrue(json, json.contains("\"budgetsExceeded\": [\"slow\"]"));
+    }
+
+    @Test
+    public void counters() throws Exception {
+        final BootstrapReport report = BootstrapReport.create();
+        report.bundlesScanned(3);
+        report.modulesResolved(2);
+        report.blocked(1_500_000);
+        report.classServed("javafx.scene.Node");
+        report.classServed("javafx.scene.Scene");
+        report.write();
+
+        final String json = read();
+        assertTrue(json, json.contains("\"bundlesScanned\": 3,"));
+        assertTrue(json, json.contains("\"modulesResolved\": 2,"));
+        assertTrue(json, json.contains("\"directivesApplied\": 0,"));
+        assertTrue(json, json.contains("\"classesServed\": 2,"));
+        assertTrue(json, json.contains("\"classesBeforeFirstUiClass\": null,"));
+        assertTrue(json, json.contains("\"firstUiClassMillis\": null,"));
+        assertTrue(json, json.contains("\"blockedMillis\": 1.500,"));
+        assertTrue(json, json.contains("\"budgetsExceeded\": []"));
+    }
+
+    @Test
+    public void writtenOnFirstUiClassAndComplete() throws Exception {
+        final BootstrapReport report = BootstrapReport.create();
+        measure(report, "bootstrap");
+        report.classServed("javafx.scene.Node");
+        assertFalse(Files.exists(this.file));
+        report.classServed("javafx.stage.Stage");
+
+        String json = read();
+        assertTrue(json, json.contains("\"classesBeforeFirstUiClass\": 1,"));
+        assertTrue(json, json.contains("\"complete\": false,"));
+        assertFalse(json, json.contains("load-pending-module"));
+
+        // a module loaded on demand after the first UI class
+        measure(report, "load-pending-module");
+        report.complete();
+        json = read();
+        assertTrue(json, json.contains("\"complete\": true,"));
+        assertPhase(json, "load-pending-module", "");
+
+        // nothing is written after the framework stop
+        Files.delete(this.file);
+        report.write();
+        report.complete();
+        assertFalse(Files.exists(this.file));
+    }
+
+    @Test
+    public void failOnBudget() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.report.budgets", "slow=0");
+        System.setProperty("fxloader.osgi.eclipse.hook.report.fail-on-budget", "true");
+        final CountDownLatch failures = new CountDownLatch(2);
+        final BootstrapReport report = BootstrapReport.create(failures::countDown);
+        measure(report, "slow");
+        report.write();
+        report.complete();
+
+        assertFalse("Failed more than once", failures.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(1, failures.getCount());
+    }
+
+    @Test
+    public void warnOnBudget() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.report.budgets", "slow=0");
+        final CountDownLatch failures = new CountDownLatch(1);
+        final BootstrapReport report = BootstrapReport.create(failures::countDown);
+        measure(report, "slow");
+        report.complete();
+
+        assertTrue(read().contains("\"budgetsExceeded\": [\"slow\"]"));
+        assertFalse("Failed without fail-on-budget", failures.await(500, TimeUnit.MILLISECONDS));
+    }
+
+    private static void measure(final BootstrapReport report, final String phase) throws InterruptedException {
+        final long[] begin = report.begin();
+        Thread.sleep(2);
+        report.end(phase, begin);
+    }
+
+    private static void assertPhase(final String json, final String phase, final String budget) {
+        final Matcher matcher = Pattern.compile("\"" + Pattern.quote(phase)
+                + "\": \\{ \"wallMillis\": [0-9.]+, \"cpuMillis\": [0-9.]+, \"count\": 1(.*) \\}").matcher(json);
+        assertTrue(json, matcher.find());
+        assertEquals(budget, matcher.group(1));
+    }
+
+    private String read() throws Exception {
+        return new String(Files.readAllBytes(this.file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.osgi.launch.EquinoxFactory;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.launch.Framework;
+
+/**
+ * Starts an Equinox framework for the tests.
+ *
+ * <p>
+ * The hook is installed by the framework, because the "hookconfigurators.properties" of the project is on the test
+ * classpath.
+ */
+public final class EmbeddedFramework {
+
+    private EmbeddedFramework() {
+    }
+
+    /**
+     * Start a framework with a clean storage.
+     *
+     * @param storage the storage directory
+     * @return the started framework
+     * @throws BundleException on errors
+     */
+    public static Framework start(final Path storage) throws BundleException {
+        return start(storage, Map.of());
+    }
+
+    /**
+     * Start a framework with a clean storage.
+     *
+     * @param storage the storage directory
+     * @param properties additional framework properties
+     * @return the started framework
+     * @throws BundleException on errors
+     */
+    public static Framework start(final Path storage, final Map<String, String> properties) throws BundleException {
+        final Map<String, String> configuration = new HashMap<>(properties);
+        configuration.put(Constants.FRAMEWORK_STORAGE, storage.toString());
+        configuration.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        final Framework framework = new EquinoxFactory().newFramework(configuration);
+        framework.start();
+        return framework;
+    }
+
+    /**
+     * Stop a framework and wait for it.
+     *
+     * @param framework the framework
+     * @throws Exception on errors
+     */
+    public static void stop(final Framework framework) throws Exception {
+        framework.stop();
+        final FrameworkEvent event = framework.waitForStop(30000);
+        if (event.getType() == FrameworkEvent.WAIT_TIMEDOUT) {
+            throw new IllegalStateException("Framework did not stop");
+        }
+    }
+}
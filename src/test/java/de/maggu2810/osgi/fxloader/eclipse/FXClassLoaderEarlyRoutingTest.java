@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class FXClassLoaderEarlyRoutingTest {
+
+    private static final String WIDGET = "package fx; public class Widget {}";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path dir;
+    private Framework framework;
+
+    @Before
+    public void startFramework() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.early-routing", "true");
+        this.dir = this.tmp.getRoot().toPath();
+        final Path module = TestModules.moduleJar(this.dir, "mod.fx", Map.of( //
+                "module-info.java", "module mod.fx { exports fx; }", //
+                "fx/Widget.java", WIDGET));
+        this.framework = EmbeddedFramework.start(Files.createDirectories(this.dir.resolve("storage")));
+        install(TestModules.providerBundle(this.dir, "mod.fx", module, Map.of()));
+
+        // the first lookup bootstraps the layer, early routing starts afterwards
+        final Class<?> widget = install(TestModules.consumerBundle(this.dir, "consumer")).loadClass("fx.Widget");
+        assertEquals("mod.fx", widget.getModule().getName());
+    }
+
+    @After
+    public void stopFramework() throws Exception {
+        System.clearProperty("fxloader.osgi.eclipse.hook.early-routing");
+        EmbeddedFramework.stop(this.framework);
+    }
+
+    @Test
+    public void routeToLayer() throws Exception {
+        final Class<?> widget = install(TestModules.consumerBundle(this.dir, "other")).loadClass("fx.Widget");
+        assertEquals("mod.fx", widget.getModule().getName());
+    }
+
+    @Test
+    public void bundleClassPathWins() throws Exception {
+        final Bundle local = install(TestModules.bundle(this.dir, "local", Map.of(), Map.of("fx/Widget.java", WIDGET)));
+        assertSame(loader(local), local.loadClass("fx.Widget").getClassLoader());
+    }
+
+    @Test
+    public void dynamicImportWins() throws Exception {
+        final Bundle exporter = install(TestModules.bundle(this.dir, "exporter", Map.of("Export-Package", "fx"),
+                Map.of("fx/Widget.java", WIDGET)));
+        final Bundle importer = install(TestModules.bundle(this.dir, "importer",
+                Map.of("DynamicImport-Package", "fx"), Map.of()));
+        assertSame(loader(exporter), importer.loadClass("fx.Widget").getClassLoader());
+    }
+
+    private Bundle install(final Path bundle) throws Exception {
+        final BundleContext context = this.framework.getBundleContext();
+        return context.installBundle(bundle.toUri().toString());
+    }
+
+    private static ClassLoader loader(final Bundle bundle) throws Exception {
+        bundle.start();
+        return bundle.adapt(BundleWiring.class).getClassLoader();
+    }
+}
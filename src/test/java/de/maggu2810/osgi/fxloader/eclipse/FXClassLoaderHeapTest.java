@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class FXClassLoaderHeapTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void layerIsReleasedOnFrameworkStop() throws Exception {
+        assertReleasedOnFrameworkStop();
+    }
+
+    @Test
+    public void lazyLayersAreReleasedOnFrameworkStop() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.lazy-modules", "true");
+        try {
+            assertReleasedOnFrameworkStop();
+        } finally {
+            System.clearProperty("fxloader.osgi.eclipse.hook.lazy-modules");
+        }
+    }
+
+    @Test
+    public void noBootstrapAfterFrameworkStop() throws Exception {
+        final Path dir = this.tmp.getRoot().toPath();
+        final Path modules = Files.createDirectories(dir.resolve("modules"));
+        Files.copy(TestModules.moduleJar(dir, "mod.fx", Map.of( //
+                "module-info.java", "module mod.fx { exports fx; }", //
+                "fx/Widget.java", "package fx; public class Widget {}")), modules.resolve("mod.fx.jar"));
+        // the module path does not need the framework to bootstrap
+        System.setProperty("fxloader.osgi.eclipse.hook.module-path", modules.toString());
+        try {
+            final Framework framework = EmbeddedFramework.start(Files.createDirectories(dir.resolve("storage")));
+            final Bundle consumer = framework.getBundleContext()
+                    .installBundle(TestModules.consumerBundle(dir, "consumer").toUri().toString());
+            assertEquals("mod.fx", consumer.loadClass("fx.Widget").getModule().getName());
+            final ClassLoader bundleLoader = consumer.adapt(BundleWiring.class).getClassLoader();
+
+            EmbeddedFramework.stop(framework);
+
+            // e.g. a thread that is still running after the stop uses the loader of the stopped bundle
+            try {
+                fail("Loaded " + bundleLoader.loadClass("fx.Widget") + " after the framework stop");
+            } catch (final ClassNotFoundException expected) {
+                // expected
+            }
+        } finally {
+            System.clearProperty("fxloader.osgi.eclipse.hook.module-path");
+        }
+    }
+
+    private void assertReleasedOnFrameworkStop() throws Exception {
+        final Path dir = this.tmp.getRoot().toPath();
+        final Path module = TestModules.moduleJar(dir, "mod.fx", Map.of( //
+                "module-info.java", "module mod.fx { exports fx; }", //
+                "fx/Widget.java", "package fx; public class Widget {}"));
+        final Path provider = TestModules.providerBundle(dir, "mod.fx", module,
+                Map.of("Java-Module-AddOpens", "mod.fx/fx=ALL-UNNAMED"));
+        final Path consumer = TestModules.consumerBundle(dir, "consumer");
+
+        final Framework framework = EmbeddedFramework.start(Files.createDirectories(dir.resolve("storage")));
+        final WeakReference<ClassLoader> layerLoader = loadLayerClass(framework, provider, consumer);
+
+        EmbeddedFramework.stop(framework);
+
+        // the stopped framework (and so the hook) is still referenced, the layer must not be
+        for (int i = 0; i < 50 && layerLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertNull("Module layer classloader has not been collected", layerLoader.get());
+        assertEquals(Bundle.RESOLVED, framework.getState());
+    }
+
+    private static WeakReference<ClassLoader> loadLayerClass(final Framework framework, final Path provider,
+            final Path consumer) throws Exception {
+        framework.getBundleContext().installBundle(provider.toUri().toString());
+        final Bundle bundle = framework.getBundleContext().installBundle(consumer.toUri().toString());
+        final Class<?> widget = bundle.loadClass("fx.Widget");
+        assertEquals("mod.fx", widget.getModule().getName());
+        assertNotSame(bundle.adapt(BundleWiring.class).getClassLoader(), widget.getClassLoader());
+        return new WeakReference<>(widget.getClassLoader());
+    }
+}
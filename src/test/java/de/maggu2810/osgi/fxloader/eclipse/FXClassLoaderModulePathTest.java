@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.launch.Framework;
+
+public class FXClassLoaderModulePathTest {
+
+    private static final String[] PROPERTIES = { "fxloader.osgi.eclipse.hook.module-path",
+            "fxloader.osgi.eclipse.hook.root-modules", "fxloader.osgi.eclipse.hook.lazy-modules",
+            "fxloader.osgi.eclipse.hook.add-opens" };
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        this.dir = this.tmp.getRoot().toPath();
+        final Path modules = Files.createDirectories(this.dir.resolve("modules"));
+        final Path base = TestModules.moduleJar(this.dir, "mod.base", Map.of( //
+                "module-info.java", "module mod.base { exports base; }", //
+                "base/Base.java", "package base; public class Base {}"));
+        Files.copy(base, modules.resolve("mod.base.jar"));
+        Files.copy(TestModules.moduleJar(this.dir, "mod.app", Map.of( //
+                "module-info.java", "module mod.app { requires transitive mod.base; exports app; }", //
+                "app/App.java", "package app; public class App extends base.Base {}"), base),
+                modules.resolve("mod.app.jar"));
+        Files.copy(TestModules.moduleJar(this.dir, "mod.unused", Map.of( //
+                "module-info.java", "module mod.unused { exports unused; }", //
+                "unused/Unused.java", "package unused; public class Unused {}")), modules.resolve("mod.unused.jar"));
+        // a plain directory of module JARs, no provider bundles are installed
+        System.setProperty("fxloader.osgi.eclipse.hook.module-path", modules.toString());
+    }
+
+    @After
+    public void tearDown() {
+        for (final String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+    }
+
+    @Test
+    public void allModules() throws Exception {
+        withConsumer(consumer -> {
+            final Class<?> app = consumer.loadClass("app.App");
+            assertEquals("mod.app", app.getModule().getName());
+            assertSame(app.getModule().getLayer(), consumer.loadClass("base.Base").getModule().getLayer());
+            assertSame(app.getModule().getLayer(), consumer.loadClass("unused.Unused").getModule().getLayer());
+        });
+    }
+
+    @Test
+    public void rootModules() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.root-modules", "mod.app");
+        withConsumer(consumer -> {
+            assertEquals("mod.base", consumer.loadClass("base.Base").getModule().getName());
+            assertNotLoaded(consumer, "unused.Unused");
+        });
+    }
+
+    @Test
+    public void rootModulesWithModifications() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.root-modules", "mod.app");
+        // modifications need the advanced bootstrap
+        System.setProperty("fxloader.osgi.eclipse.hook.add-opens", "mod.app/app=ALL-UNNAMED");
+        withConsumer(consumer -> {
+            final Class<?> app = consumer.loadClass("app.App");
+            assertEquals("mod.app", app.getModule().getName());
+            assertTrue(app.getModule().isOpen("app", getClass().getClassLoader().getUnnamedModule()));
+            assertNotLoaded(consumer, "unused.Unused");
+        });
+    }
+
+    @Test
+    public void lazyModules() throws Exception {
+        System.setProperty("fxloader.osgi.eclipse.hook.root-modules", "mod.app");
+        System.setProperty("fxloader.osgi.eclipse.hook.lazy-modules", "true");
+        withConsumer(consumer -> {
+            final Class<?> app = consumer.loadClass("app.App");
+            final Class<?> unused = consumer.loadClass("unused.Unused");
+            assertEquals("mod.unused", unused.getModule().getName());
+            // resolved on demand in a layer of its own
+            assertNotSame(app.getModule().getLayer(), unused.getModule().getLayer());
+        });
+    }
+
+    private void withConsumer(final ConsumerTest test) throws Exception {
+        final Framework framework = EmbeddedFramework
+                .start(Files.createDirectories(this.dir.resolve("storage")));
+        try {
+            test.run(framework.getBundleContext()
+                    .installBundle(TestModules.consumerBundle(this.dir, "consumer").toUri().toString()));
+        } finally {
+            EmbeddedFramework.stop(framework);
+        }
+    }
+
+    private static void assertNotLoaded(final Bundle consumer, final String name) {
+        try {
+            fail("Loaded " + consumer.loadClass(name) + " that is not resolved by the root modules");
+        } catch (final ClassNotFoundException expected) {
+            // expected
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConsumerTest {
+        void run(Bundle consumer) throws Exception;
+    }
+}
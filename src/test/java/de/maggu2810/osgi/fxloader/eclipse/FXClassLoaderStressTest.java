@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Runs the bootstrap, class lookups (postFindClass) and the creation of bundle classloaders (createClassLoader)
+ * concurrently on a growing number of threads against an embedded framework.
+ *
+ * <p>
+ * Every round starts a new framework, so all threads race for the bootstrap. A round fails on lost lookups (a class
+ * of the layer is not found), phantom classes (a missing class is found), split class identity and classes that are
+ * not consistently published by their layer. The throughput per thread count is printed. The stop rounds stop the
+ * framework while the threads are still looking up classes (the teardown races with the lookups).
+ *
+ * <p>
+ * The test is not part of the default build, it is run by the "stress" profile ("mvn test -Pstress"). The thread
+ * counts and the lookups per thread could be changed by "fxloader.test.stress.threads" (e.g. "1,2,4,8") and
+ * "fxloader.test.stress.iterations".
+ */
+public class FXClassLoaderStressTest {
+
+    private static final int MODULES = 4;
+    private static final String[] PACKAGES = { "a", "b" };
+    private static final int CLASSES_PER_PACKAGE = 10;
+    // a new consumer bundle (and so a new bundle classloader) every n lookups
+    private static final int BUNDLE_INTERVAL = 500;
+    private static final int MISSING_INTERVAL = 16;
+    // lookups per thread before the framework is stopped and after the stop has finished
+    private static final int STOP_LOOKUPS = 500;
+
+    @ClassRule
+    public static final TemporaryFolder TMP = new TemporaryFolder();
+
+    private static final List<Path> PROVIDERS = new ArrayList<>();
+    private static final List<String> CLASSES = new ArrayList<>();
+    private static Path consumer;
+    private static Path modulePath;
+    private static final List<String> RESULTS = new ArrayList<>();
+
+    private final int iterations = Integer.getInteger("fxloader.test.stress.iterations", 5000);
+    private final int[] threadCounts = Stream
+            .of(System.getProperty("fxloader.test.stress.threads", "1,2,4,8,16").split(",")).map(String::trim)
+            .mapToInt(Integer::parseInt).toArray();
+
+    @BeforeClass
+    public static void createBundles() throws Exception {
+        final Path dir = TMP.getRoot().toPath();
+        modulePath = Files.createDirectories(dir.resolve("modules"));
+        for (int m = 0; m < MODULES; m++) {
+            final String id = "stress" + (char) ('a' + m);
+            final String module = "mod." + id;
+            final Map<String, String> sources = new HashMap<>();
+            sources.put("module-info.java", "module " + module + " { exports " + id + ".a; exports " + id + ".b; }");
+            for (final String p : PACKAGES) {
+                for (int c = 0; c < CLASSES_PER_PACKAGE; c++) {
+                    final String pn = id + "." + p;
+                    final String name = pn + ".C" + c;
+                    sources.put(name.replace('.', '/') + ".java", "package " + pn + "; public class C" + c
+                            + " { public static final String ID = new String(\"" + name + "\"); }");
+                    CLASSES.add(name);
+                }
+            }
+            final Path moduleJar = TestModules.moduleJar(dir, module, sources);
+            Files.copy(moduleJar, modulePath.resolve(moduleJar.getFileName()));
+            PROVIDERS.add(TestModules.providerBundle(dir, module, moduleJar, Map.of()));
+        }
+        consumer = TestModules.consumerBundle(dir, "consumer");
+    }
+
+    @AfterClass
+    public static void printResults() {
+        System.out.println("FXClassLoaderStressTest - throughput");
+        RESULTS.forEach(System.out::println);
+    }
+
+    @Test
+    public void eagerLayer() throws Exception {
+        for (final int threads : this.threadCounts) {
+            runRound("eager", threads, Map.of());
+        }
+    }
+
+    @Test
+    public void lazyLayers() throws Exception {
+        for (final int threads : this.threadCounts) {
+            runRound("lazy", threads, Map.of("fxloader.osgi.eclipse.hook.lazy-modules", "true",
+                    "fxloader.osgi.eclipse.hook.root-modules", "mod.stressa"));
+        }
+    }
+
+    @Test
+    public void stopDuringLookups() throws Exception {
+        final int threads = this.threadCounts[this.threadCounts.length - 1];
+        runStopRound("eager", threads, Map.of());
+        runStopRound("lazy", threads, Map.of("fxloader.osgi.eclipse.hook.lazy-modules", "true",
+                "fxloader.osgi.eclipse.hook.root-modules", "mod.stressa"));
+        // the module path does not need the (stopped) framework to bootstrap
+        runStopRound("path", threads, Map.of("fxloader.osgi.eclipse.hook.module-path", modulePath.toString()));
+        // early routing runs in preFindClass, its failures are not turned into a ClassNotFoundException
+        runStopRound("routed", threads, Map.of("fxloader.osgi.eclipse.hook.early-routing", "true",
+                "fxloader.osgi.eclipse.hook.lazy-modules", "true", "fxloader.osgi.eclipse.hook.root-modules",
+                "mod.stressa"));
+    }
+
+    private void runRound(final String mode, final int threads, final Map<String, String> properties)
+            throws Exception {
+        properties.forEach(System::setProperty);
+        final Path storage = Files.createDirectories(TMP.getRoot().toPath().resolve(mode + "-" + threads));
+        // the consumer bundles are installed several times
+        final Framework framework = EmbeddedFramework.start(storage,
+                Map.of(Constants.FRAMEWORK_BSNVERSION, Constants.FRAMEWORK_BSNVERSION_MULTIPLE));
+        try {
+            final BundleContext context = framework.getBundleContext();
+            for (final Path provider : PROVIDERS) {
+                context.installBundle(provider.toUri().toString());
+            }
+
+            final Queue<String> failures = new ConcurrentLinkedQueue<>();
+            final Map<String, Class<?>> seen = new ConcurrentHashMap<>();
+            final AtomicLong lookups = new AtomicLong();
+            final AtomicLong startNanos = new AtomicLong();
+            final CyclicBarrier start = new CyclicBarrier(threads, () -> startNanos.set(System.nanoTime()));
+
+            final List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                workers.add(new Thread(() -> {
+                    try {
+                        Bundle bundle = install(context, thread, 0);
+                        start.await();
+                        for (int i = 0; i < this.iterations; i++) {
+                            if (i % BUNDLE_INTERVAL == BUNDLE_INTERVAL - 1) {
+                                bundle = install(context, thread, i);
+                            }
+                            final String name = CLASSES.get((i * 7 + thread * 13) % CLASSES.size());
+                            try {
+                                check(name, bundle.loadClass(name), seen, failures);
+                            } catch (final ClassNotFoundException e) {
+                                failures.add("Lost lookup of " + name);
+                            }
+                            if (i % MISSING_INTERVAL == 0) {
+                                expectMissing(bundle, name.substring(0, name.lastIndexOf('.')) + ".Missing", failures);
+                                expectMissing(bundle, "stress.missing.Missing", failures);
+                            }
+                        }
+                        lookups.addAndGet(this.iterations + 2 * (this.iterations / MISSING_INTERVAL + 1));
+                    } catch (final Throwable e) {
+                        failures.add("Worker failed: " + e);
+                    }
+                }, "stress-" + thread));
+            }
+            workers.forEach(Thread::start);
+            for (final Thread worker : workers) {
+                worker.join();
+            }
+            final long nanos = System.nanoTime() - startNanos.get();
+
+            assertTrue(mode + " with " + threads + " threads: " + failures.size() + " failures, e.g. "
+                    + failures.stream().distinct().limit(10).collect(Collectors.toList()), failures.isEmpty());
+            if (mode.equals("eager")) {
+                // one bootstrap, one layer
+                final Set<ModuleLayer> layers = seen.values().stream().map(c -> c.getModule().getLayer())
+                        .collect(Collectors.toSet());
+                assertTrue(mode + " with " + threads + " threads: several layers " + layers, layers.size() == 1);
+            }
+            RESULTS.add(String.format("%-5s %3d threads: %,10d lookups in %,6d ms = %,12.0f lookups/s", mode, threads,
+                    lookups.get(), nanos / 1_000_000, lookups.get() * 1e9 / nanos));
+        } finally {
+            EmbeddedFramework.stop(framework);
+            properties.keySet().forEach(System::clearProperty);
+        }
+    }
+
+    private void runStopRound(final String mode, final int threads, final Map<String, String> properties)
+            throws Exception {
+        properties.forEach(System::setProperty);
+        final Path storage = Files.createDirectories(TMP.getRoot().toPath().resolve("stop-" + mode));
+        final Framework framework = EmbeddedFramework.start(storage,
+                Map.of(Constants.FRAMEWORK_BSNVERSION, Constants.FRAMEWORK_BSNVERSION_MULTIPLE));
+        final Queue<String> failures = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean stopping = new AtomicBoolean();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final AtomicLong lookups = new AtomicLong();
+        final List<Thread> workers = new ArrayList<>();
+        try {
+            final BundleContext context = framework.getBundleContext();
+            for (final Path provider : PROVIDERS) {
+                context.installBundle(provider.toUri().toString());
+            }
+
+            final List<Bundle> bundles = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                bundles.add(install(context, t, 0));
+            }
+            framework.adapt(FrameworkWiring.class).resolveBundles(bundles);
+
+            final Map<String, Class<?>> seen = new ConcurrentHashMap<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                // the loader is used after the stop as well, e.g. by a thread the application did not stop
+                final ClassLoader loader = bundles.get(t).adapt(BundleWiring.class).getClassLoader();
+                workers.add(new Thread(() -> {
+                    try {
+                        int afterStop = 0;
+                        for (int i = 0; afterStop < STOP_LOOKUPS; i++) {
+                            final boolean beforeStop = !stopping.get();
+                            final boolean afterStopped = stopped.get();
+                            final String name = CLASSES.get((i * 7 + thread * 13) % CLASSES.size());
+                            try {
+                                final Class<?> c = loader.loadClass(name);
+                                if (afterStopped) {
+                                    failures.add("Served " + name + " after the framework stop");
+                                } else {
+                                    check(name, c, seen, failures);
+                                }
+                            } catch (final ClassNotFoundException e) {
+                                // a lookup that overlaps the stop may fail
+                                if (beforeStop && !stopping.get()) {
+                                    failures.add("Lost lookup of " + name);
+                                }
+                            }
+                            lookups.incrementAndGet();
+                            if (afterStopped) {
+                                afterStop++;
+                            }
+                        }
+                    } catch (final Throwable e) {
+                        failures.add("Worker failed: " + e);
+                    }
+                }, "stress-stop-" + thread));
+            }
+            workers.forEach(Thread::start);
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (lookups.get() < (long) threads * STOP_LOOKUPS && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        } finally {
+            stopping.set(true);
+            EmbeddedFramework.stop(framework);
+            stopped.set(true);
+            properties.keySet().forEach(System::clearProperty);
+        }
+
+        for (final Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(60));
+            if (worker.isAlive()) {
+                failures.add("Worker " + worker.getName() + " is stuck");
+            }
+        }
+        assertTrue(mode + " stopped with " + threads + " threads: " + failures.size() + " failures, e.g. "
+                + failures.stream().distinct().limit(10).collect(Collectors.toList()), failures.isEmpty());
+    }
+
+    private static Bundle install(final BundleContext context, final int thread, final int i) throws Exception {
+        try (InputStream in = Files.newInputStream(consumer)) {
+            return context.installBundle("consumer-" + thread + "-" + i, in);
+        }
+    }
+
+    private static void check(final String name, final Class<?> c, final Map<String, Class<?>> seen,
+            final Queue<String> failures) throws Exception {
+        final String module = "mod." + name.substring(0, name.indexOf('.'));
+        final ModuleLayer layer = c.getModule().getLayer();
+        if (!c.getName().equals(name) || !module.equals(c.getModule().getName())) {
+            failures.add("Wrong class " + c + " in " + c.getModule() + " for " + name);
+        } else if (layer == null || layer.findLoader(module) != c.getClassLoader()) {
+            failures.add("Class " + name + " is not published by its layer");
+        } else if (!name.equals(c.getField("ID").get(null))) {
+            failures.add("Class " + name + " is not initialized");
+        }
+        final Class<?> previous = seen.putIfAbsent(name, c);
+        if (previous != null && previous != c) {
+            failures.add("Split identity of " + name);
+        }
+    }
+
+    private static void expectMissing(final Bundle bundle, final String name, final Queue<String> failures) {
+        try {
+            failures.add("Phantom class " + bundle.loadClass(name));
+        } catch (final ClassNotFoundException e) {
+            // expected
+        }
+    }
+}
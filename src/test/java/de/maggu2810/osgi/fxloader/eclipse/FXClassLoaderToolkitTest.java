@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.spi.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.launch.Framework;
+
+public class FXClassLoaderToolkitTest {
+
+    private static final String FX_THREAD = "JavaFX Application Thread";
+
+    private static final Map<String, String> PROPERTIES = Map.of( //
+            "fxloader.osgi.eclipse.hook.prewarm-toolkit", "true", //
+            "glass.platform", "Monocle", //
+            "monocle.platform", "Headless", //
+            "prism.order", "sw");
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path javafx;
+
+    @Before
+    public void setUp() {
+        assumeTrue("JavaFX test modules are built for Linux",
+                System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux"));
+        final String dir = System.getProperty("fxloader.test.javafx");
+        assumeTrue("JavaFX test modules are not available", dir != null);
+        this.javafx = Paths.get(dir);
+        PROPERTIES.forEach(System::setProperty);
+    }
+
+    @After
+    public void tearDown() {
+        PROPERTIES.keySet().forEach(System::clearProperty);
+    }
+
+    @Test
+    public void toolkitIsExitedOnFrameworkStop() throws Exception {
+        final Path dir = this.tmp.getRoot().toPath();
+        final Path graphics = withMonocle(dir);
+
+        final Framework framework = EmbeddedFramework.start(Files.createDirectories(dir.resolve("storage")));
+        try {
+            final BundleContext context = framework.getBundleContext();
+            context.installBundle(TestModules.providerBundle(dir, "javafx.base",
+                    this.javafx.resolve("javafx-base-linux.jar"), Collections.emptyMap()).toUri().toString());
+            context.installBundle(
+                    TestModules.providerBundle(dir, "javafx.graphics", graphics, Collections.emptyMap()).toUri()
+                            .toString());
+            final Bundle consumer = context
+                    .installBundle(TestModules.consumerBundle(dir, "consumer").toUri().toString());
+
+            // the first lookup bootstraps the layer and starts the toolkit in the background
+            final Class<?> platform = consumer.loadClass("javafx.application.Platform");
+            assertEquals("javafx.graphics", platform.getModule().getName());
+            assertTrue("Toolkit has not been started", waitForFxThread(true));
+        } finally {
+            EmbeddedFramework.stop(framework);
+        }
+        assertFalse("Toolkit has not been exited", waitForFxThread(false));
+    }
+
+    private static boolean waitForFxThread(final boolean alive) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            final boolean found = Thread.getAllStackTraces().keySet().stream()
+                    .anyMatch(t -> t.isAlive() && FX_THREAD.equals(t.getName()));
+            if (found == alive) {
+                return found;
+            }
+            Thread.sleep(100);
+        }
+        return !alive;
+    }
+
+    /**
+     * Add the headless Monocle platform to the graphics module.
+     */
+    private Path withMonocle(final Path dir) throws Exception {
+        final Path classes = Files.createDirectories(dir.resolve("monocle"));
+        try (JarFile jar = new JarFile(this.javafx.resolve("openjfx-monocle.jar").toFile())) {
+            for (final JarEntry entry : Collections.list(jar.entries())) {
+                if (entry.isDirectory() || !entry.getName().startsWith("com/")) {
+                    continue;
+                }
+                final Path file = classes.resolve(entry.getName());
+                Files.createDirectories(file.getParent());
+                try (InputStream in = jar.getInputStream(entry)) {
+                    Files.copy(in, file);
+                }
+            }
+        }
+        final Path graphics = dir.resolve("javafx.graphics.jar");
+        Files.copy(this.javafx.resolve("javafx-graphics-linux.jar"), graphics);
+        final int result = ToolProvider.findFirst("jar").orElseThrow().run(System.out, System.err, "--update",
+                "--file", graphics.toString(), "-C", classes.toString(), "com");
+        assertEquals("Failed to add Monocle", 0, result);
+        return graphics;
+    }
+}
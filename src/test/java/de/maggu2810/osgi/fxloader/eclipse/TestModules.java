@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Creates modular JARs and bundles for the tests.
+ */
+public final class TestModules {
+
+    private TestModules() {
+    }
+
+    /**
+     * Compile a module and package it as modular JAR.
+     *
+     * @param dir the working directory
+     * @param module the module name
+     * @param sources the sources by path relative to the module root (including "module-info.java")
+     * @param modulePath the JARs of the required modules
+     * @return the modular JAR
+     * @throws IOException on errors
+     */
+    public static Path moduleJar(final Path dir, final String module, final Map<String, String> sources,
+            final Path... modulePath) throws IOException {
+        final Path jar = dir.resolve(module + ".jar");
+        jar(jar, manifest(), compile(dir, module, sources, modulePath));
+        return jar;
+    }
+
+    /**
+     * Create a bundle that provides a module JAR (by the "Java-Module" header).
+     *
+     * @param dir the working directory
+     * @param module the module name
+     * @param moduleJar the modular JAR
+     * @param headers additional manifest headers
+     * @return the bundle
+     * @throws IOException on errors
+     */
+    public static Path providerBundle(final Path dir, final String module, final Path moduleJar,
+            final Map<String, String> headers) throws IOException {
+        final Path content = Files.createDirectories(dir.resolve("content").resolve(module));
+        Files.copy(moduleJar, content.resolve(module + ".jar"));
+        final Manifest manifest = bundleManifest(module + ".provider", headers);
+        manifest.getMainAttributes().putValue("Java-Module", module);
+        final Path bundle = dir.resolve(module + ".provider.jar");
+        jar(bundle, manifest, content);
+        return bundle;
+    }
+
+    /**
+     * Create a bundle of classes that are compiled on the class path.
+     *
+     * @param dir the working directory
+     * @param symbolicName the bundle symbolic name
+     * @param headers additional manifest headers
+     * @param sources the sources by path relative to the source root
+     * @return the bundle
+     * @throws IOException on errors
+     */
+    public static Path bundle(final Path dir, final String symbolicName, final Map<String, String> headers,
+            final Map<String, String> sources) throws IOException {
+        final Path bundle = dir.resolve(symbolicName + ".jar");
+        jar(bundle, bundleManifest(symbolicName, headers), compile(dir, symbolicName, sources));
+        return bundle;
+    }
+
+    /**
+     * Create an empty bundle whose classloader is used to load the classes of the module layer.
+     *
+     * @param dir the working directory
+     * @param symbolicName the bundle symbolic name
+     * @return the bundle
+     * @throws IOException on errors
+     */
+    public static Path consumerBundle(final Path dir, final String symbolicName) throws IOException {
+        return bundle(dir, symbolicName, Map.of(), Map.of());
+    }
+
+    private static Path compile(final Path dir, final String name, final Map<String, String> sources,
+            final Path... modulePath) throws IOException {
+        final Path src = Files.createDirectories(dir.resolve("src").resolve(name));
+        final Path classes = Files.createDirectories(dir.resolve("classes").resolve(name));
+        if (sources.isEmpty()) {
+            return classes;
+        }
+        final List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(classes.toString());
+        if (modulePath.length > 0) {
+            args.add("--module-path");
+            args.add(Stream.of(modulePath).map(Path::toString).collect(Collectors.joining(File.pathSeparator)));
+        }
+        for (final Map.Entry<String, String> source : sources.entrySet()) {
+            final Path file = src.resolve(source.getKey());
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.getValue().getBytes(StandardCharsets.UTF_8));
+            args.add(file.toString());
+        }
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler.run(null, null, null, args.toArray(new String[args.size()])) != 0) {
+            throw new IOException("Failed to compile " + name);
+        }
+        return classes;
+    }
+
+    private static Manifest manifest() {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        return manifest;
+    }
+
+    private static Manifest bundleManifest(final String symbolicName, final Map<String, String> headers) {
+        final Manifest manifest = manifest();
+        manifest.getMainAttributes().putValue("Bundle-ManifestVersion", "2");
+        manifest.getMainAttributes().putValue("Bundle-SymbolicName", symbolicName);
+        headers.forEach(manifest.getMainAttributes()::putValue);
+        return manifest;
+    }
+
+    private static void jar(final Path jar, final Manifest manifest, final Path content) throws IOException {
+        try (OutputStream os = Files.newOutputStream(jar);
+                JarOutputStream out = new JarOutputStream(os, manifest);
+                Stream<Path> files = Files.walk(content)) {
+            for (final Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                out.putNextEntry(new JarEntry(content.relativize(file).toString().replace('\\', '/')));
+                out.write(Files.readAllBytes(file));
+                out.closeEntry();
+            }
+        }
+    }
+}
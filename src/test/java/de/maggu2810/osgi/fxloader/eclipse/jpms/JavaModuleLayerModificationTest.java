@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse.jpms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.module.Configuration;
+import java.lang.module.ModuleFinder;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+
+import de.maggu2810.osgi.fxloader.eclipse.TestModules;
+
+public class JavaModuleLayerModificationTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private ModuleFinder finder;
+
+    @Before
+    public void createModules() throws IOException {
+        final Path dir = this.tmp.getRoot().toPath();
+        final Path a = TestModules.moduleJar(dir, "mod.a", Map.of( //
+                "module-info.java", "module mod.a { exports a; }", //
+                "a/A.java", "package a; public class A {}", //
+                "a/internal/Hidden.java", "package a.internal; public class Hidden {}"));
+        final Path b = TestModules.moduleJar(dir, "mod.b", Map.of( //
+                "module-info.java", "module mod.b { exports b; }", //
+                "b/B.java", "package b; public class B {}"));
+        this.finder = ModuleFinder.of(a, b);
+    }
+
+    private static JavaModuleLayerModification modifications() {
+        return new JavaModuleLayerModification(new Bundle[0], Set.of(new AddReads("mod.b", "mod.a")),
+                Set.of(new AddOpenExports("mod.a", "a.internal", "mod.b")),
+                Set.of(new AddOpenExports("mod.a", "a.internal", "mod.b")));
+    }
+
+    @Test
+    public void deferUntilTargetIsLoaded() {
+        final JavaModuleLayerModification modifications = modifications();
+        final DemandModuleLayers layers = new DemandModuleLayers(this.finder, getClass().getClassLoader(),
+                modifications);
+
+        final Module a = layers.load(Set.of("mod.a")).findModule("mod.a").orElseThrow();
+        assertEquals(0, modifications.getAppliedCount());
+        assertEquals(3, modifications.getPendingCount());
+
+        final Module b = layers.load(Set.of("mod.b")).findModule("mod.b").orElseThrow();
+        assertTrue(a.isExported("a.internal", b));
+        assertTrue(a.isOpen("a.internal", b));
+        assertTrue(b.canRead(a));
+        assertEquals(3, modifications.getAppliedCount());
+        assertEquals(0, modifications.getPendingCount());
+    }
+
+    @Test
+    public void deferUntilSourceIsLoaded() {
+        final JavaModuleLayerModification modifications = modifications();
+        final DemandModuleLayers layers = new DemandModuleLayers(this.finder, getClass().getClassLoader(),
+                modifications);
+
+        final Module b = layers.load(Set.of("mod.b")).findModule("mod.b").orElseThrow();
+        final Module a = layers.load(Set.of("mod.a")).findModule("mod.a").orElseThrow();
+        // the read edge of the module of the former layer has been added by the controller of that layer
+        assertTrue(b.canRead(a));
+        assertTrue(a.isExported("a.internal", b));
+        assertTrue(a.isOpen("a.internal", b));
+        assertEquals(0, modifications.getPendingCount());
+    }
+
+    @Test
+    public void missingTarget() {
+        final JavaModuleLayerModification modifications = new JavaModuleLayerModification(new Bundle[0],
+                Set.of(new AddReads("mod.a", "mod.missing")),
+                Set.of(new AddOpenExports("mod.a", "a.internal", "mod.missing")), Set.of());
+        final Configuration configuration = ModuleLayer.boot().configuration().resolve(this.finder, ModuleFinder.of(),
+                Set.of("mod.a"));
+        final ModuleLayer.Controller controller = ModuleLayer.defineModulesWithOneLoader(configuration,
+                Arrays.asList(ModuleLayer.boot()), getClass().getClassLoader());
+
+        modifications.applyConfigurations(controller);
+
+        final Module a = controller.layer().findModule("mod.a").orElseThrow();
+        assertFalse(a.isExported("a.internal"));
+        assertEquals(0, modifications.getAppliedCount());
+        assertEquals(2, modifications.getPendingCount());
+    }
+}
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2026 maggu2810 and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package de.maggu2810.osgi.fxloader.eclipse.jpms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.maggu2810.osgi.fxloader.eclipse.TestModules;
+
+public class PackedModuleImageTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path image;
+
+    @Before
+    public void pack() throws IOException {
+        final Map<String, String> a = new TreeMap<>();
+        a.put("a/one/A.class", "class a.one.A");
+        a.put("a/one/style.css", ".root {}");
+        a.put("a/one/img.png", "png a");
+        a.put("shared.txt", "shared a");
+        final Map<String, String> b = new TreeMap<>();
+        b.put("b/two/B.class", "class b.two.B");
+        b.put("shared.txt", "shared b");
+
+        this.image = this.tmp.getRoot().toPath().resolve("modules.img");
+        PackedModuleImage.pack(this.image, Arrays.asList(jar("mod.a", a), jar("mod.b", b)));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        try (PackedModuleImage img = PackedModuleImage.open(this.image)) {
+            assertEquals(Set.of("mod.a", "mod.b"), img.moduleNames());
+
+            assertEquals("png a", string(img.read("a/one/img.png")));
+            assertEquals("shared b", string(img.read("mod.b", "shared.txt")));
+            assertNull(img.read("mod.b", "a/one/img.png"));
+            assertNull(img.read("missing.txt"));
+
+            final List<URL> shared = img.findResources("shared.txt");
+            assertEquals(2, shared.size());
+            assertEquals(Set.of("shared a", "shared b"),
+                    shared.stream().map(PackedModuleImageTest::string).collect(Collectors.toSet()));
+
+            final ModuleFinder finder = img.finder();
+            assertEquals(Set.of("mod.a", "mod.b"),
+                    finder.findAll().stream().map(r -> r.descriptor().name()).collect(Collectors.toSet()));
+            final ModuleReference ref = finder.find("mod.a").orElseThrow();
+            final ModuleDescriptor descriptor = ref.descriptor();
+            assertTrue(descriptor.isAutomatic());
+            assertEquals(Set.of("a.one"), descriptor.packages());
+            try (ModuleReader reader = ref.open()) {
+                assertEquals(Set.of("META-INF/MANIFEST.MF", "a/one/A.class", "a/one/style.css", "a/one/img.png",
+                        "shared.txt"),
+                        reader.list().collect(Collectors.toSet()));
+                assertEquals("shared a", string(reader.read("shared.txt").orElseThrow()));
+                assertEquals("shared a", new String(reader.open("shared.txt").orElseThrow().readAllBytes(),
+                        StandardCharsets.UTF_8));
+                assertEquals("shared a", string(reader.find("shared.txt").orElseThrow().toURL()));
+            }
+        }
+    }
+
+    @Test
+    public void resourceOnlyPackages() throws IOException {
+        final Path dir = this.tmp.newFolder().toPath();
+        // javac needs a class in the opened package, the packed module contains a resource only
+        final Path compiled = TestModules.moduleJar(dir, "mod.res", Map.of( //
+                "module-info.java", "module mod.res { exports p; opens res; }", //
+                "p/P.java", "package p; public class P {}", //
+                "res/Dummy.java", "package res; class Dummy {}"));
+        final Map<String, byte[]> entries = new TreeMap<>();
+        try (JarFile jar = new JarFile(compiled.toFile())) {
+            for (final String name : List.of("module-info.class", "p/P.class")) {
+                try (InputStream in = jar.getInputStream(jar.getEntry(name))) {
+                    entries.put(name, in.readAllBytes());
+                }
+            }
+        }
+        entries.put("res/only.txt", "only".getBytes(StandardCharsets.UTF_8));
+        entries.put("META-INF/extra/ignored.txt", new byte[0]);
+        entries.put("1illegal/ignored.txt", new byte[0]);
+        final Path jar = dir.resolve("mod.res.jar");
+        try (OutputStream os = Files.newOutputStream(jar); JarOutputStream out = new JarOutputStream(os)) {
+            for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+
+        final Path resImage = dir.resolve("res.img");
+        PackedModuleImage.pack(resImage, List.of(jar));
+        try (PackedModuleImage img = PackedModuleImage.open(resImage)) {
+            final Set<String> expected = ModuleFinder.of(jar).find("mod.res").orElseThrow().descriptor().packages();
+            assertEquals(Set.of("p", "res"), expected);
+            final ModuleReference ref = img.finder().find("mod.res").orElseThrow();
+            assertEquals(expected, ref.descriptor().packages());
+            assertTrue(ref.descriptor().opens().stream().anyMatch(o -> o.source().equals("res")));
+            assertEquals("only", string(img.read("mod.res", "res/only.txt")));
+        }
+    }
+
+    @Test
+    public void resolveURLs() throws IOException {
+        try (PackedModuleImage img = PackedModuleImage.open(this.image)) {
+            final URL css = img.findResource("mod.a", "a/one/style.css");
+            assertNotNull(css);
+            assertEquals(".root {}", string(css));
+
+            assertEquals("png a", string(new URL(css, "img.png")));
+            assertEquals(".root {}", string(new URL(css.toExternalForm())));
+            assertEquals("png a", string(css.toURI().resolve("img.png").toURL()));
+            assertEquals("shared a", string(new URL(css, "../../shared.txt")));
+        } catch (final URISyntaxException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void closedImage() throws IOException {
+        final URL url;
+        try (PackedModuleImage img = PackedModuleImage.open(this.image)) {
+            url = img.findResource("shared.txt");
+        }
+        try (InputStream in = url.openStream()) {
+            fail("Opened entry of a closed image");
+        } catch (final IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void corruptImages() throws IOException {
+        final byte[] valid = Files.readAllBytes(this.image);
+        final int trailer = valid.length - Long.BYTES - Integer.BYTES;
+        final int indexOffset = (int) ByteBuffer.wrap(valid).getLong(trailer);
+
+        assertCorrupt(Arrays.copyOf(valid, 10), b -> {
+        });
+        assertCorrupt(valid, b -> b.putInt(Integer.BYTES, 99));
+        assertCorrupt(valid, b -> b.putLong(trailer, valid.length));
+        assertCorrupt(valid, b -> b.putLong(trailer, -1));
+        // module count
+        assertCorrupt(valid, b -> b.putInt(indexOffset, Integer.MAX_VALUE));
+        assertCorrupt(valid, b -> b.putInt(indexOffset, -1));
+        // length of the first module name
+        assertCorrupt(valid, b -> b.putInt(indexOffset + Integer.BYTES, -5));
+        assertCorrupt(valid, b -> b.putInt(indexOffset + Integer.BYTES, Integer.MAX_VALUE));
+        // index cut off in the middle
+        final byte[] truncated = new byte[indexOffset + 20 + Long.BYTES + Integer.BYTES];
+        System.arraycopy(valid, 0, truncated, 0, indexOffset + 20);
+        System.arraycopy(valid, trailer, truncated, indexOffset + 20, Long.BYTES + Integer.BYTES);
+        assertCorrupt(truncated, b -> {
+        });
+    }
+
+    private void assertCorrupt(final byte[] valid, final Consumer<ByteBuffer> corruption) throws IOException {
+        final byte[] bytes = valid.clone();
+        corruption.accept(ByteBuffer.wrap(bytes));
+        final Path file = this.tmp.newFile().toPath();
+        Files.write(file, bytes);
+        try (PackedModuleImage img = PackedModuleImage.open(file)) {
+            fail("Opened corrupt image " + img);
+        } catch (final IOException expected) {
+            // expected
+        }
+    }
+
+    private Path jar(final String module, final Map<String, String> entries) throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Automatic-Module-Name", module);
+        final Path jar = this.tmp.getRoot().toPath().resolve(module + ".jar");
+        try (OutputStream os = Files.newOutputStream(jar); JarOutputStream out = new JarOutputStream(os, manifest)) {
+            for (final Map.Entry<String, String> entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static String string(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String string(final URL url) {
+        try (InputStream in = url.openStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new AssertionError(url.toString(), e);
+        }
+    }
+}